@@ -0,0 +1,69 @@
+package com.birdwatcher52.ministreak;
+
+import java.util.Locale;
+
+import net.runelite.api.ChatMessageType;
+import net.runelite.client.util.Text;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** Per-message classification cost in onChatMessage; the corpus is mostly noise, like a busy world. */
+@State(Scope.Thread)
+public class ChatTriggerBenchmark
+{
+    private static final String[] LINES = {
+            "Welcome to Old School RuneScape.",
+            "<col=ef1020>You have a funny feeling like you're being followed.</col>",
+            "You catch a shrimp.",
+            "Your Agility level is now 71.",
+            "<col=0040ff>Valuable drop: Rune scimitar (15,000 coins)</col>",
+            "You don't have enough inventory space.",
+            "Your birdhouse trap is now full and will start to catch birds.",
+            "You plant a Ranarr seed in the herb patch.",
+            "The bird house trap is now full and will begin to catch birds.",
+            "You plant 3 Potato seeds in the allotment.",
+            "<col=006000>Congratulations, you've completed a hard task: Chop some magic logs.</col>",
+            "Your reward is: <col=ff0000>5</col> x <col=ff0000>Unidentified minerals</col>.",
+            "You need a Farming level of 32 to plant this seed.",
+            "Oh dear, you are dead!",
+            "The herb patch is now fully grown.",
+            "Your Magic lamp wishes to be rubbed.",
+    };
+    private static final int MASK = LINES.length - 1;
+
+    private ChatTriggers triggers;
+    private int next;
+
+    @Setup
+    public void setup()
+    {
+        triggers = new ChatTriggers();
+    }
+
+    @Benchmark
+    public MiniTask detect()
+    {
+        triggers.newTick();
+        return triggers.detect(ChatMessageType.GAMEMESSAGE, LINES[next++ & MASK]);
+    }
+
+    /** The removeTags + toLowerCase + contains() chain detect() replaced, for comparison. */
+    @Benchmark
+    public int legacyContainsChain()
+    {
+        final String msg = Text.removeTags(LINES[next++ & MASK]).toLowerCase(Locale.ROOT);
+        if ((msg.contains("birdhouse") || msg.contains("bird house"))
+                && msg.contains("trap is now full")
+                && (msg.contains("will start to catch birds") || msg.contains("will begin to catch birds")))
+        {
+            return 1;
+        }
+        if (msg.startsWith("you plant") && msg.contains("seed in the herb patch"))
+        {
+            return 2;
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,28 @@
+package com.birdwatcher52.ministreak;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/** ConfigManager stand-in for benchmarks: a plain map, safe for the storage flush thread. */
+final class InMemoryStateStore implements StateStore
+{
+    private final Map<String, String> values = new ConcurrentHashMap<>();
+
+    @Override
+    public String get(String key)
+    {
+        return values.get(key);
+    }
+
+    @Override
+    public void set(String key, String value)
+    {
+        values.put(key, value);
+    }
+
+    @Override
+    public void unset(String key)
+    {
+        values.remove(key);
+    }
+}
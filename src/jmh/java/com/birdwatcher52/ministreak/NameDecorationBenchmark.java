@@ -0,0 +1,72 @@
+package com.birdwatcher52.ministreak;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** Sent-line and input-line rewriting in StreakNameDecorator, with realistic icon chains. */
+@State(Scope.Thread)
+public class NameDecorationBenchmark
+{
+    private static final int OUR_IDX = 41;
+    private static final int NATIVE_IDX = 2;
+    private static final String NATIVE_CHAIN = "<img=2>";
+    private static final int STREAK = 37;
+
+    // Sender names as they arrive: plain, ironman crown, clan rank + crown, already decorated, stale prefix
+    private static final String[] NAMES = {
+            "Zezima",
+            "<img=2>Iron Bob",
+            "<img=22><img=2>Clan Mate",
+            "<col=ffdf00>37</col> <img=41><img=2>Iron Bob",
+            "<col=ffdf00>36</col> <img=41><img=2>Iron Bob",
+            "<img=41><img=2><img=10>Uim Alice",
+            "<col=ff9040>Coloured</col>Name",
+            "<img=3>Hardcore Hal",
+    };
+    private static final int NAME_MASK = NAMES.length - 1;
+
+    // Chatbox input as the prompt script writes it, and after an earlier decoration pass
+    private static final String[] INPUTS = {
+            "<img=2>Iron Bob: hello world<col=0000ff>*</col>",
+            "<col=ffdf00>37</col> <img=41><img=2>Iron Bob: typing...<col=0000ff>*</col>",
+            "<col=ffdf00>36</col> <img=41><img=2>Iron Bob: gz<col=0000ff>*</col>",
+            "Iron Bob: <col=0000ff>*</col>",
+    };
+    private static final int INPUT_MASK = INPUTS.length - 1;
+
+    private NameTokens tokens;
+    private int next;
+
+    @Setup
+    public void setup()
+    {
+        tokens = new NameTokens();
+    }
+
+    @Benchmark
+    public String decorateSentName()
+    {
+        final String base = NAMES[next++ & NAME_MASK];
+        if (base.startsWith(tokens.head(STREAK, OUR_IDX))) return base;
+
+        final int start = NameTokens.skipStreakPrefix(base);
+        final int chainEnd = NameTokens.skipImgChain(base, start);
+        return tokens.compose(base, start, chainEnd, STREAK, OUR_IDX, NATIVE_IDX, true);
+    }
+
+    @Benchmark
+    public String decorateInput()
+    {
+        final String text = INPUTS[next++ & INPUT_MASK];
+        return tokens.decorateInput(text, text.indexOf(':'), "Iron Bob",
+                STREAK, OUR_IDX, NATIVE_CHAIN, true);
+    }
+
+    @Benchmark
+    public boolean isLocalPlayer()
+    {
+        return NameTokens.isSameName(NAMES[next++ & NAME_MASK], "iron bob");
+    }
+}
@@ -0,0 +1,44 @@
+package com.birdwatcher52.ministreak;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** ResetService.handleDailyRoll: the every-tick same-day check and the once-a-day roll. */
+@State(Scope.Thread)
+public class ResetServiceBenchmark
+{
+    private static final int TODAY = 20_000;
+    private static final int HISTORY_DAYS = 3 * 365;
+
+    private final ResetService resetService = new ResetService();
+    private StreakState state;
+
+    @Setup
+    public void setup()
+    {
+        state = new StreakState();
+        for (int d = TODAY - HISTORY_DAYS; d < TODAY; d++)
+        {
+            for (MiniTask task : MiniTask.values()) state.markDone(task, d);
+        }
+        state.setLastSeenDay(TODAY);
+    }
+
+    @Benchmark
+    public int sameDay()
+    {
+        resetService.handleDailyRoll(state, TODAY);
+        return state.getCurrentStreak();
+    }
+
+    /** Worst case: the streak is rebuilt from three years of history. */
+    @Benchmark
+    public int rollToNewDay()
+    {
+        state.setLastSeenDay(TODAY - 1);
+        resetService.handleDailyRoll(state, TODAY);
+        return state.getCurrentStreak();
+    }
+}
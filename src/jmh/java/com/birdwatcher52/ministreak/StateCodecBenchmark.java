@@ -0,0 +1,87 @@
+package com.birdwatcher52.ministreak;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Encoding one profile for the store: the single StateCodec record against the old
+ * one-key-per-field layout (ints and "YYYY-MM-DD" strings plus the history string).
+ * A year of history, both tasks done most days.
+ */
+@State(Scope.Thread)
+public class StateCodecBenchmark
+{
+    private static final int TODAY = 20_000;
+
+    private StreakState state;
+    private String record;
+    private Map<String, String> keys;
+
+    @Setup
+    public void setup()
+    {
+        state = new StreakState();
+        for (int d = TODAY - 365; d < TODAY; d++)
+        {
+            if (d % 11 == 0) continue;
+            for (MiniTask t : MiniTask.ALL) state.markDone(t, d);
+        }
+        state.setCurrentStreak(9);
+        state.setBestStreak(state.getHistory().longestRun());
+        state.setLastSeenDay(TODAY);
+        state.markProgress(MiniTask.HERB, TODAY);
+        state.setLastCompletionDay(TODAY - 1);
+        state.setLastAnnouncementDay(TODAY);
+
+        record = StateCodec.encode(state);
+        keys = encodeKeys();
+    }
+
+    @Benchmark
+    public String encodeRecord()
+    {
+        return StateCodec.encode(state);
+    }
+
+    @Benchmark
+    public StreakState decodeRecord()
+    {
+        final StreakState s = new StreakState();
+        StateCodec.decode(record, s);
+        return s;
+    }
+
+    @Benchmark
+    public Map<String, String> encodeKeys()
+    {
+        final Map<String, String> m = new HashMap<>();
+        m.put("currentStreak", Integer.toString(state.getCurrentStreak()));
+        m.put("bestStreak", Integer.toString(state.getBestStreak()));
+        m.put("lastSeenDateUTC", UtcClock.format(state.getLastSeenDay()));
+        m.put("progressDateUTC", UtcClock.format(state.getProgressDay()));
+        m.put("progressMask", Integer.toString(state.getProgressMask()));
+        m.put("lastCompletionDateUTC", UtcClock.format(state.getLastCompletionDay()));
+        m.put("lastAnnouncementDateUTC", UtcClock.format(state.getLastAnnouncementDay()));
+        m.put("history", state.getHistory().encode());
+        return m;
+    }
+
+    @Benchmark
+    public StreakState decodeKeys()
+    {
+        final StreakState s = new StreakState();
+        s.setCurrentStreak(Integer.parseInt(keys.get("currentStreak")));
+        s.setBestStreak(Integer.parseInt(keys.get("bestStreak")));
+        s.setLastSeenDay(UtcClock.parse(keys.get("lastSeenDateUTC")));
+        s.setProgress(UtcClock.parse(keys.get("progressDateUTC")), Integer.parseInt(keys.get("progressMask")));
+        s.setLastCompletionDay(UtcClock.parse(keys.get("lastCompletionDateUTC")));
+        s.setLastAnnouncementDay(UtcClock.parse(keys.get("lastAnnouncementDateUTC")));
+        s.setHistory(CompletionHistory.decode(keys.get("history")));
+        return s;
+    }
+}
@@ -0,0 +1,61 @@
+package com.birdwatcher52.ministreak;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/** MiniStreakStorage.save on the tick path, against an in-memory store. */
+@State(Scope.Thread)
+public class StorageBenchmark
+{
+    private static final long ACCOUNT = 42L;
+
+    private ScheduledExecutorService executor;
+    private MiniStreakStorage storage;
+    private StreakState state;
+    private int counter;
+
+    @Setup
+    public void setup()
+    {
+        executor = Executors.newSingleThreadScheduledExecutor();
+        storage = new MiniStreakStorage(new InMemoryStateStore(), executor, new PluginMetrics());
+        state = new StreakState();
+        storage.loadInto(ACCOUNT, state);
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        storage.flush();
+        executor.shutdownNow();
+    }
+
+    /** Steady state: nothing changed since the last tick. */
+    @Benchmark
+    public void saveClean()
+    {
+        storage.save(ACCOUNT, state);
+    }
+
+    /** One field changed per call; staged and coalesced into the pending flush. */
+    @Benchmark
+    public void saveDirty()
+    {
+        state.setCurrentStreak(++counter & 1023);
+        storage.save(ACCOUNT, state);
+    }
+
+    @Benchmark
+    public StreakState load()
+    {
+        final StreakState s = new StreakState();
+        storage.loadInto(ACCOUNT, s);
+        return s;
+    }
+}
@@ -0,0 +1,59 @@
+package com.birdwatcher52.ministreak;
+
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+
+import net.runelite.client.ui.FontManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * One overlay frame: the cached card (drawImage of a pre-rendered image) against laying out and
+ * drawing the text every frame. The snapshot and minute stay put, as they do for ~all frames.
+ */
+@State(Scope.Thread)
+public class StreakOverlayBenchmark
+{
+    private StreakCard card;
+    private StreakSnapshot snapshot;
+    private BufferedImage frame;
+    private Graphics2D g;
+
+    @Setup(Level.Trial)
+    public void setup()
+    {
+        final StreakState s = new StreakState();
+        s.setCurrentStreak(37);
+        s.setBestStreak(52);
+        s.markProgress(MiniTask.BIRDHOUSE, 20_000);
+        snapshot = StreakSnapshot.of(1, s, 20_000);
+
+        card = new StreakCard(FontManager.getRunescapeSmallFont());
+        frame = new BufferedImage(765, 503, BufferedImage.TYPE_INT_RGB);
+        g = frame.createGraphics();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        g.dispose();
+    }
+
+    @Benchmark
+    public Dimension cached()
+    {
+        g.drawImage(card.image(snapshot, 187), 0, 0, null);
+        return card.size();
+    }
+
+    @Benchmark
+    public Dimension naive()
+    {
+        return card.paint(g, snapshot, 187);
+    }
+}
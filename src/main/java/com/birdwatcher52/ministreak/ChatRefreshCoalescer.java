@@ -0,0 +1,48 @@
+package com.birdwatcher52.ministreak;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import net.runelite.api.Client;
+import net.runelite.client.callback.ClientThread;
+
+/**
+ * Batches chatbox rebuilds: any number of markDirty() calls in one client cycle
+ * turn into a single client.refreshChat() on the next one.
+ */
+@Singleton
+final class ChatRefreshCoalescer
+{
+    private final Client client;
+    private final ClientThread clientThread;
+    private final PluginMetrics metrics;
+
+    private final AtomicBoolean pending = new AtomicBoolean(false);
+
+    @Inject
+    ChatRefreshCoalescer(Client client, ClientThread clientThread, PluginMetrics metrics)
+    {
+        this.client = client;
+        this.clientThread = clientThread;
+        this.metrics = metrics;
+    }
+
+    /** Ask for a chat redraw; safe from any thread. */
+    void markDirty()
+    {
+        metrics.count(PluginMetrics.Counter.CHAT_REFRESH_ASKED);
+        if (pending.compareAndSet(false, true))
+        {
+            clientThread.invokeLater(this::flush);
+        }
+    }
+
+    private void flush()
+    {
+        // Clear first so a request raised during the refresh gets its own pass
+        pending.set(false);
+        metrics.count(PluginMetrics.Counter.CHAT_REFRESH_RUN);
+        client.refreshChat();
+    }
+}
@@ -0,0 +1,44 @@
+package com.birdwatcher52.ministreak;
+
+import com.birdwatcher52.ministreak.util.TriggerMatcher;
+import net.runelite.api.ChatMessageType;
+
+/**
+ * Game messages that count as completing a mini task.
+ * Adding a mini only needs a new rule in the table below.
+ */
+final class ChatTriggers
+{
+    private static final TriggerMatcher RULES = TriggerMatcher.builder()
+            .rule(MiniTask.BIRDHOUSE.ordinal())
+                .contains("birdhouse", "bird house")
+                .contains("trap is now full")
+                .contains("will start to catch birds", "will begin to catch birds")
+            .rule(MiniTask.HERB.ordinal())
+                .startsWith("you plant")
+                .contains("seed in the herb patch")
+            .build();
+
+    private static final MiniTask[] TASKS = MiniTask.values();
+
+    // tasks already reported this tick (bit = ordinal)
+    private long markedThisTick = 0L;
+
+    void newTick()
+    {
+        markedThisTick = 0L;
+    }
+
+    /** @return the task this line completes, or null. Each task fires at most once per tick. */
+    MiniTask detect(ChatMessageType type, String message)
+    {
+        if (type != ChatMessageType.GAMEMESSAGE && type != ChatMessageType.SPAM) return null;
+
+        final long hits = RULES.match(message) & ~markedThisTick;
+        if (hits == 0L) return null;
+
+        final int ordinal = Long.numberOfTrailingZeros(hits);
+        markedThisTick |= 1L << ordinal;
+        return TASKS[ordinal];
+    }
+}
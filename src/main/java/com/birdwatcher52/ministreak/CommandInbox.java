@@ -0,0 +1,86 @@
+package com.birdwatcher52.ministreak;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import lombok.extern.slf4j.Slf4j;
+import net.runelite.client.callback.ClientThread;
+
+/**
+ * Single writer for StreakState: every mutation (panel buttons, chat, day rolls, config)
+ * is submitted here from whatever thread it starts on, and the client thread runs them
+ * in submission order. After each non-empty batch the flush hook runs once, so a burst
+ * of marks costs one save and one UI publish.
+ */
+@Slf4j
+@Singleton
+final class CommandInbox
+{
+    private final ClientThread clientThread;
+    private final PluginMetrics metrics;
+
+    private final Queue<Runnable> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean pending = new AtomicBoolean(false);
+
+    // client thread only
+    private Runnable flush = () -> {};
+
+    @Inject
+    CommandInbox(ClientThread clientThread, PluginMetrics metrics)
+    {
+        this.clientThread = clientThread;
+        this.metrics = metrics;
+    }
+
+    /** Runs once after every batch that ran at least one command. */
+    void setFlush(Runnable flush)
+    {
+        this.flush = (flush == null) ? () -> {} : flush;
+    }
+
+    /** Queue a mutation; safe from any thread. */
+    void submit(Runnable command)
+    {
+        queue.add(command);
+        if (pending.compareAndSet(false, true))
+        {
+            clientThread.invokeLater(this::drain);
+        }
+    }
+
+    /** Drop anything not yet run. */
+    void clear()
+    {
+        queue.clear();
+    }
+
+    /** Run everything queued now, then the flush hook. Client thread only. */
+    void drain()
+    {
+        // Clear first so a submit during the batch schedules its own pass
+        pending.set(false);
+
+        final long t = metrics.start();
+        int ran = 0;
+        Runnable c;
+        while ((c = queue.poll()) != null)
+        {
+            try
+            {
+                c.run();
+            }
+            catch (RuntimeException e)
+            {
+                log.warn("MiniStreak command failed", e);
+            }
+            ran++;
+        }
+        if (ran == 0) return;
+
+        flush.run();
+        metrics.stop(PluginMetrics.Probe.COMMAND_BATCH, t);
+    }
+}
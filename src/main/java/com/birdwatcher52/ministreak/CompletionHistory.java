@@ -0,0 +1,385 @@
+package com.birdwatcher52.ministreak;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Base64;
+
+import static com.birdwatcher52.ministreak.UtcClock.NO_DAY;
+
+/**
+ * Per-day completion record: one bit per mini task per UTC epoch day.
+ *
+ * Each task has its own bitset over days starting at {@code originDay} (aligned to 64),
+ * so a "complete" word is the AND of the required tasks' words and streaks fall out of
+ * leading/trailing-ones counts, 64 days at a time. Thirty years of two tasks is ~2.7 KB.
+ *
+ * Each day is judged by the required set in force on it: changing the set records the old one
+ * as a rule for the days before the change, so past days keep the verdict they were played under.
+ */
+final class CompletionHistory
+{
+    private static final int TASKS = MiniTask.values().length;
+    private static final String FORMAT = "h1";
+
+    private int originDay = NO_DAY;   // day of bit 0 in word 0
+    private int wordCount = 0;        // words in use (per task)
+    private long[][] words = new long[TASKS][0];
+
+    // MiniTask bits that must all be set for a day to count, from the last rule's end on
+    private int requiredMask = MiniTask.ALL_MASK;
+
+    // earlier required sets: ruleMasks[i] applied to the days before ruleEnds[i] (ascending)
+    private int ruleCount = 0;
+    private int[] ruleEnds = new int[0];
+    private int[] ruleMasks = new int[0];
+
+    /** Judge every day from the last rule on by {@code mask}. */
+    void setRequiredMask(int mask)
+    {
+        requiredMask = mask;
+    }
+
+    /** From {@code day} on, {@code mask} is required; the days before keep the set they had. */
+    void requireFrom(int day, int mask)
+    {
+        if (mask == requiredMask) return;
+        final int last = ruleCount - 1;
+        if (ruleCount == 0 || ruleEnds[last] < day)
+        {
+            if (ruleCount > 0 && ruleMasks[last] == requiredMask) ruleEnds[last] = day; // same set, longer
+            else addRule(day, requiredMask);
+        }
+        // else changed again the same day: the set in between only ever covered today
+        requiredMask = mask;
+    }
+
+    boolean isEmpty()
+    {
+        return wordCount == 0;
+    }
+
+    void clear()
+    {
+        originDay = NO_DAY;
+        wordCount = 0;
+        words = new long[TASKS][0];
+        ruleCount = 0;
+    }
+
+    /** @return true if the bit was not already set */
+    boolean mark(MiniTask task, int day)
+    {
+        ensureCovers(day);
+        final int idx = day - originDay;
+        final long bit = 1L << (idx & 63);
+        final long[] w = words[task.ordinal()];
+        if ((w[idx >>> 6] & bit) != 0) return false;
+        w[idx >>> 6] |= bit;
+        return true;
+    }
+
+    boolean isDone(MiniTask task, int day)
+    {
+        if (!covers(day)) return false;
+        final int idx = day - originDay;
+        return (words[task.ordinal()][idx >>> 6] & (1L << (idx & 63))) != 0;
+    }
+
+    /** Every required task done on {@code day}. */
+    boolean isComplete(int day)
+    {
+        if (!covers(day)) return false;
+        final int idx = day - originDay;
+        return (completeWord(idx >>> 6) & (1L << (idx & 63))) != 0;
+    }
+
+    /** Live streak: the run ending today if today is complete, else the run ending yesterday. */
+    int currentStreak(int today)
+    {
+        return isComplete(today) ? runEndingAt(today) : runEndingAt(today - 1);
+    }
+
+    /** Consecutive complete days ending at (and including) {@code day}. */
+    int runEndingAt(int day)
+    {
+        if (!covers(day)) return 0;
+
+        final int idx = day - originDay;
+        int w = idx >>> 6;
+        final int bit = idx & 63;
+
+        // Move 'bit' to the top so the run reads as leading ones
+        final long top = completeWord(w) << (63 - bit);
+        int run = Long.numberOfLeadingZeros(~top);
+        if (run <= bit) return run;
+
+        run = bit + 1;
+        while (--w >= 0)
+        {
+            final long c = completeWord(w);
+            if (c == -1L)
+            {
+                run += 64;
+                continue;
+            }
+            return run + Long.numberOfLeadingZeros(~c);
+        }
+        return run;
+    }
+
+    /** Longest run of complete days anywhere in the history. */
+    int longestRun()
+    {
+        int best = 0;
+        int run = 0; // run still open at the top of the previous word
+        for (int w = 0; w < wordCount; w++)
+        {
+            final long c = completeWord(w);
+            if (c == -1L)
+            {
+                run += 64;
+                continue;
+            }
+
+            // close the run carried in from below (low bits = earlier days)
+            best = Math.max(best, run + Long.numberOfTrailingZeros(~c));
+            best = Math.max(best, longestInWord(c));
+            run = Long.numberOfLeadingZeros(~c);
+        }
+        return Math.max(best, run);
+    }
+
+    // --- Storage form: "h1;<originDay>;<tasks>;<base64 words>" ---
+
+    String encode()
+    {
+        if (isEmpty()) return "";
+
+        final ByteBuffer buf = ByteBuffer.allocate(TASKS * wordCount * Long.BYTES);
+        for (long[] taskWords : words)
+        {
+            for (int w = 0; w < wordCount; w++) buf.putLong(taskWords[w]);
+        }
+        return FORMAT + ";" + originDay + ";" + TASKS + ";" + Base64.getEncoder().encodeToString(buf.array());
+    }
+
+    /** @return decoded history, or an empty one if {@code s} is blank or malformed */
+    static CompletionHistory decode(String s)
+    {
+        final CompletionHistory h = new CompletionHistory();
+        if (s == null || s.isEmpty()) return h;
+
+        try
+        {
+            final String[] parts = s.split(";", 4);
+            if (parts.length != 4 || !FORMAT.equals(parts[0])) return h;
+
+            final int origin = Integer.parseInt(parts[1]);
+            final int storedTasks = Integer.parseInt(parts[2]);
+            final ByteBuffer buf = ByteBuffer.wrap(Base64.getDecoder().decode(parts[3]));
+            // bounded like readFrom, so the multiply below can't wrap (to 0, then divide by it)
+            if (storedTasks <= 0 || storedTasks > 64 || buf.remaining() % (storedTasks * Long.BYTES) != 0) return h;
+
+            final int count = buf.remaining() / (storedTasks * Long.BYTES);
+            h.originDay = origin;
+            h.wordCount = count;
+            h.words = new long[TASKS][count];
+            for (int t = 0; t < storedTasks; t++)
+            {
+                for (int w = 0; w < count; w++)
+                {
+                    final long v = buf.getLong();
+                    if (t < TASKS) h.words[t][w] = v; // tasks dropped since are ignored
+                }
+            }
+        }
+        catch (IllegalArgumentException e) // also NumberFormatException
+        {
+            h.clear();
+        }
+        return h;
+    }
+
+    /** Copy with every bit and rule moved {@code days} later (earlier if negative). */
+    CompletionHistory shifted(int days)
+    {
+        final CompletionHistory h = new CompletionHistory();
+        h.requiredMask = requiredMask;
+        for (int i = 0; i < ruleCount; i++) h.addRule(ruleEnds[i] + days, ruleMasks[i]);
+        for (int t = 0; t < TASKS; t++)
+        {
+            final MiniTask task = MiniTask.ALL[t];
+            for (int w = 0; w < wordCount; w++)
+            {
+                for (long bits = words[t][w]; bits != 0; bits &= bits - 1)
+                {
+                    h.mark(task, originDay + w * 64 + Long.numberOfTrailingZeros(bits) + days);
+                }
+            }
+        }
+        return h;
+    }
+
+    /** Binary form inside a {@link StateCodec} record: origin, task count, word count, raw words. */
+    void writeTo(StateCodec.Writer out)
+    {
+        out.day(originDay);
+        out.uvarint(isEmpty() ? 0 : TASKS);
+        out.uvarint(wordCount);
+        if (isEmpty()) return;
+        for (long[] taskWords : words)
+        {
+            for (int w = 0; w < wordCount; w++) out.fixed64(taskWords[w]);
+        }
+    }
+
+    static CompletionHistory readFrom(StateCodec.Reader in)
+    {
+        final CompletionHistory h = new CompletionHistory();
+        final int origin = in.day();
+        final long storedTasks = in.uvarint();
+        final long count = in.uvarint();
+        if (count == 0) return h;
+        if (origin == NO_DAY || storedTasks == 0 || storedTasks > 64 || count > (1 << 16))
+        {
+            throw new IllegalArgumentException("bad history header");
+        }
+
+        h.originDay = origin;
+        h.wordCount = (int) count;
+        h.words = new long[TASKS][(int) count];
+        for (int t = 0; t < storedTasks; t++)
+        {
+            for (int w = 0; w < count; w++)
+            {
+                final long v = in.fixed64();
+                if (t < TASKS) h.words[t][w] = v; // tasks dropped since are ignored
+            }
+        }
+        return h;
+    }
+
+    /** The earlier required sets, after the history in a {@link StateCodec} record (version 2+). */
+    void writeRulesTo(StateCodec.Writer out)
+    {
+        out.uvarint(ruleCount);
+        for (int i = 0; i < ruleCount; i++)
+        {
+            out.day(ruleEnds[i]);
+            out.uvarint(ruleMasks[i]);
+        }
+    }
+
+    void readRulesFrom(StateCodec.Reader in)
+    {
+        final long count = in.uvarint();
+        if (count > (1 << 16)) throw new IllegalArgumentException("bad rule count");
+        ruleCount = 0;
+        for (int i = 0; i < count; i++)
+        {
+            final int end = in.day();
+            final int mask = (int) in.uvarint() & MiniTask.ALL_MASK;
+            if (end == NO_DAY || (ruleCount > 0 && end <= ruleEnds[ruleCount - 1]) || mask == 0)
+            {
+                throw new IllegalArgumentException("bad rule");
+            }
+            addRule(end, mask);
+        }
+    }
+
+    // --- Internals ---
+
+    private void addRule(int end, int mask)
+    {
+        if (ruleCount == ruleEnds.length)
+        {
+            ruleEnds = Arrays.copyOf(ruleEnds, ruleCount + 4);
+            ruleMasks = Arrays.copyOf(ruleMasks, ruleCount + 4);
+        }
+        ruleEnds[ruleCount] = end;
+        ruleMasks[ruleCount] = mask;
+        ruleCount++;
+    }
+
+    /** Complete-day bits of word {@code w}, each day judged by the set in force on it. */
+    private long completeWord(int w)
+    {
+        if (ruleCount == 0) return completeWord(w, requiredMask);
+
+        final long first = (long) originDay + (long) w * 64;
+        long c = 0;
+        long from = Long.MIN_VALUE;
+        for (int i = 0; i <= ruleCount; i++)
+        {
+            final long to = (i < ruleCount) ? ruleEnds[i] : Long.MAX_VALUE;
+            final long lo = Math.max(from, first) - first;
+            final long hi = Math.min(to, first + 64) - first;
+            if (lo < hi)
+            {
+                final long range = (hi == 64 ? -1L : (1L << hi) - 1) & (-1L << lo);
+                c |= completeWord(w, i < ruleCount ? ruleMasks[i] : requiredMask) & range;
+            }
+            from = to;
+        }
+        return c;
+    }
+
+    private long completeWord(int w, int mask)
+    {
+        long c = -1L;
+        for (int m = mask; m != 0; m &= m - 1) c &= words[Integer.numberOfTrailingZeros(m)][w];
+        return c;
+    }
+
+    private boolean covers(int day)
+    {
+        return originDay != NO_DAY && day >= originDay && (long) day - originDay < (long) wordCount * 64;
+    }
+
+    private void ensureCovers(int day)
+    {
+        final int aligned = Math.floorDiv(day, 64) * 64;
+        if (originDay == NO_DAY)
+        {
+            originDay = aligned;
+        }
+
+        if (day < originDay)
+        {
+            // grow downwards: shift existing words up
+            final int shift = (originDay - aligned) / 64;
+            for (int t = 0; t < TASKS; t++)
+            {
+                final long[] grown = new long[wordCount + shift];
+                System.arraycopy(words[t], 0, grown, shift, wordCount);
+                words[t] = grown;
+            }
+            wordCount += shift;
+            originDay = aligned;
+        }
+
+        final int needed = (day - originDay) / 64 + 1;
+        if (needed > wordCount)
+        {
+            for (int t = 0; t < TASKS; t++)
+            {
+                if (words[t].length < needed)
+                {
+                    words[t] = Arrays.copyOf(words[t], Math.max(needed, words[t].length * 2));
+                }
+            }
+            wordCount = needed;
+        }
+    }
+
+    private static int longestInWord(long x)
+    {
+        int n = 0;
+        while (x != 0)
+        {
+            x &= x << 1;
+            n++;
+        }
+        return n;
+    }
+}
@@ -0,0 +1,71 @@
+package com.birdwatcher52.ministreak;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import net.runelite.client.config.ConfigManager;
+
+/**
+ * {@link StateStore} on top of RuneLite's ConfigManager, in its own "ministreakstate" group.
+ *
+ * Older builds kept state in the "ministreak" config group; those keys are moved over
+ * the first time they are read.
+ */
+@Singleton
+final class ConfigStateStore implements StateStore
+{
+    static final String GROUP = "ministreakstate";
+
+    private static final String LEGACY_GROUP = "ministreak";
+    static final Set<String> LEGACY_KEYS = new HashSet<>(Arrays.asList(
+            "currentStreak",
+            "bestStreak",
+            "lastSeenDateUTC",
+            "lastBirdhouseDateUTC",
+            "lastHerbDateUTC",
+            "lastCompletionDateUTC",
+            "lastAnnouncementDateUTC"
+    ));
+
+    private final ConfigManager configManager;
+
+    @Inject
+    ConfigStateStore(ConfigManager configManager)
+    {
+        this.configManager = configManager;
+    }
+
+    @Override
+    public String get(String key)
+    {
+        final String v = configManager.getConfiguration(GROUP, key);
+        if (v != null || !LEGACY_KEYS.contains(key))
+        {
+            return v;
+        }
+
+        // One-time move out of the user config group
+        final String legacy = configManager.getConfiguration(LEGACY_GROUP, key);
+        if (legacy != null)
+        {
+            configManager.setConfiguration(GROUP, key, legacy);
+            configManager.unsetConfiguration(LEGACY_GROUP, key);
+        }
+        return legacy;
+    }
+
+    @Override
+    public void set(String key, String value)
+    {
+        configManager.setConfiguration(GROUP, key, value);
+    }
+
+    @Override
+    public void unset(String key)
+    {
+        configManager.unsetConfiguration(GROUP, key);
+    }
+}
@@ -2,8 +2,6 @@ package com.birdwatcher52.ministreak;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
-import java.time.LocalDate;
-import java.time.ZoneOffset;
 
 import net.runelite.client.Notifier;
 
@@ -12,11 +10,13 @@ import net.runelite.client.Notifier;
 final class DailyAnnouncer
 {
     private final Notifier notifier;
+    private final UtcClock clock;
 
     @Inject
-    DailyAnnouncer(Notifier notifier)
+    DailyAnnouncer(Notifier notifier, UtcClock clock)
     {
         this.notifier = notifier;
+        this.clock = clock;
     }
 
     void maybeNotifyOnReset(StreakState s)
@@ -31,19 +31,19 @@ final class DailyAnnouncer
 
     private void maybeNotifyOnce(StreakState s)
     {
-        final String today = LocalDate.now(ZoneOffset.UTC).toString();
+        final int today = clock.today();
 
         // De-dupe: only once per UTC day
-        if (today.equals(s.getLastAnnouncementDateUTC()))
+        if (today == s.getLastAnnouncementDay())
         {
             return;
         }
 
         // Suppress if already fully completed today
-        if (s.bothDoneTodayUTC())
+        if (s.isCompleteOn(today))
         {
             // Stamp anyway so we don't show again on subsequent logins this UTC day
-            s.setLastAnnouncementDateUTC(today);
+            s.setLastAnnouncementDay(today);
             return;
         }
 
@@ -60,6 +60,6 @@ final class DailyAnnouncer
             // Keep UX resilient even if Notifier is disabled or throws
         }
 
-        s.setLastAnnouncementDateUTC(today);
+        s.setLastAnnouncementDay(today);
     }
 }
@@ -1,38 +1,45 @@
 package com.birdwatcher52.ministreak;
 
-import java.time.LocalDate;
-import java.time.ZoneOffset;
-
 final class DailyCompletionService
 {
-    void onBirdhouseMarked(StreakState s)
+    void onMarked(StreakState s, MiniTask task, int today)
     {
-        s.markBirdhouseTodayUTC();
-        maybeFinishToday(s);
+        s.markProgress(task, today);
+        s.markDone(task, today);
+        maybeFinishToday(s, today);
     }
 
-    void onHerbMarked(StreakState s)
+    /**
+     * The required set changed (or a profile saved under another one was loaded). It applies from
+     * today on: earlier days keep the verdict they got, and only today is judged again.
+     */
+    void onRequiredChanged(StreakState s, int requiredMask, int today)
     {
-        s.markHerbTodayUTC();
-        maybeFinishToday(s);
+        s.changeRequiredMask(requiredMask, today);
+        s.setCurrentStreak(s.getHistory().currentStreak(today));
+        if (s.getLastCompletionDay() == today && !s.isCompleteOn(today))
+        {
+            // widened after today counted: today has to be earned again under the new set
+            s.setLastCompletionDay(UtcClock.NO_DAY);
+        }
+        maybeFinishToday(s, today);
     }
 
-    /** Increment the streak at most once per UTC day when both minis are done. */
-    private void maybeFinishToday(StreakState s)
+    /** Count the day at most once, when every required mini is done; the streak is rebuilt from history. */
+    private void maybeFinishToday(StreakState s, int today)
     {
-        if (!s.bothDoneTodayUTC())
+        if (!s.isCompleteOn(today))
         {
-            return; // not both completed yet
+            return; // not all completed yet
         }
 
-        final String today = LocalDate.now(ZoneOffset.UTC).toString();
-        if (today.equals(s.getLastCompletionDateUTC()))
+        if (today == s.getLastCompletionDay())
         {
             return; // already counted today
         }
 
-        s.setCurrentStreak(s.getCurrentStreak() + 1);
+        s.setCurrentStreak(s.getHistory().runEndingAt(today));
         s.setBestStreak(s.getCurrentStreak());
-        s.setLastCompletionDateUTC(today); // idempotence guard
+        s.setLastCompletionDay(today); // idempotence guard
     }
 }
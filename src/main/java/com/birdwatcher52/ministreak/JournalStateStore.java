@@ -0,0 +1,496 @@
+package com.birdwatcher52.ministreak;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import lombok.extern.slf4j.Slf4j;
+import net.runelite.client.RuneLite;
+import net.runelite.client.config.ConfigManager;
+
+/**
+ * {@link StateStore} in local files under ~/.runelite/ministreak instead of the (synced) config profile.
+ *
+ * Every set/unset is appended to an in-memory batch; {@link #commit()} writes the batch to
+ * {@code state.journal} through a FileChannel and fsyncs once. When the journal passes
+ * COMPACT_BYTES the whole map is written to {@code state.snapshot} (temp file + atomic move)
+ * and the journal is truncated. Startup reads the snapshot, then replays the journal tail up to
+ * the first torn or corrupt record, so a crash loses at most the batch that was never committed.
+ *
+ * Only one client writes the files: the first to lock {@code ministreak.lock} (a file of its own,
+ * so the journal stays readable where locks are mandatory). Another client
+ * running at the same time (an alt) reads them but keeps its own changes in its batch; at
+ * each commit it tries the lock again and, once it has it, re-reads the files and lays its
+ * batch on top before writing. Until then nothing it changes is on disk.
+ *
+ * The first time, everything in the config-backed store is imported. From then on the config
+ * copies are never read again: a corrupt snapshot is moved aside and rebuilt from the journal,
+ * and an unreadable directory makes the store unavailable ({@link #isAvailable()}): reads come
+ * back empty and writes are dropped, so nothing derived from that empty view ever reaches the
+ * files. Only a directory that never worked falls back to the config store.
+ */
+@Slf4j
+@Singleton
+final class JournalStateStore implements StateStore
+{
+    private static final String DIR = "ministreak";
+    private static final String SNAPSHOT = "state.snapshot";
+    private static final String JOURNAL = "state.journal";
+    private static final String LOCK = "ministreak.lock";
+
+    private static final int SNAPSHOT_MAGIC = 0x4d535331; // "MSS1"
+    private static final byte OP_SET = 1;
+    private static final byte OP_UNSET = 2;
+    private static final int COMPACT_BYTES = 64 * 1024;
+    private static final int MAX_RECORD = 1 << 20;
+
+    // in the config store; set once the files have been seeded from it
+    private static final String KEY_IMPORTED = "journalImported";
+
+    private final ConfigStateStore fallback;
+    private final ConfigManager configManager;
+    private final Path dir;
+
+    // everything below guarded by this
+    private final Map<String, String> values = new HashMap<>();
+    private ByteBuffer batch = ByteBuffer.allocate(4096);
+    private FileChannel journal;
+    private FileChannel lockFile;
+    private FileLock lock; // null while another client owns the files
+    private boolean opened;
+    private boolean imported;
+    private boolean failed;
+    private boolean unavailable; // imported, but the files can't be read right now
+
+    @Inject
+    JournalStateStore(ConfigStateStore fallback, ConfigManager configManager)
+    {
+        this(fallback, configManager, new File(RuneLite.RUNELITE_DIR, DIR).toPath());
+    }
+
+    JournalStateStore(ConfigStateStore fallback, ConfigManager configManager, Path dir)
+    {
+        this.fallback = fallback;
+        this.configManager = configManager;
+        this.dir = dir;
+    }
+
+    @Override
+    public synchronized boolean isAvailable()
+    {
+        if (!ensureOpen()) return true; // config-backed
+        if (unavailable) reload();
+        return !unavailable;
+    }
+
+    @Override
+    public synchronized String get(String key)
+    {
+        if (!ensureOpen()) return fallback.get(key);
+        return values.get(key);
+    }
+
+    @Override
+    public synchronized void set(String key, String value)
+    {
+        if (!ensureOpen())
+        {
+            fallback.set(key, value);
+            return;
+        }
+        if (unavailable) return;
+        if (value.equals(values.put(key, value))) return;
+        append(OP_SET, key, value);
+    }
+
+    @Override
+    public synchronized void unset(String key)
+    {
+        if (!ensureOpen())
+        {
+            fallback.unset(key);
+            return;
+        }
+        if (unavailable) return;
+        if (values.remove(key) == null) return;
+        append(OP_UNSET, key, null);
+    }
+
+    @Override
+    public synchronized void commit()
+    {
+        if (!opened || failed || batch.position() == 0) return;
+        if ((unavailable || lock == null) && !takeOver()) return;
+
+        try
+        {
+            batch.flip();
+            while (batch.hasRemaining()) journal.write(batch);
+            journal.force(false);
+            batch.clear();
+        }
+        catch (IOException e)
+        {
+            // keep whatever wasn't written; the next commit retries it
+            batch.compact();
+            log.warn("Failed to write MiniStreak journal", e);
+            return;
+        }
+
+        try
+        {
+            if (journal.size() > COMPACT_BYTES) compact();
+        }
+        catch (IOException e)
+        {
+            log.warn("Failed to compact MiniStreak journal", e); // journal is intact; try again later
+        }
+    }
+
+    // --- Open / recover ---
+
+    private boolean ensureOpen()
+    {
+        if (opened) return !failed;
+        opened = true;
+        imported = fallback.get(KEY_IMPORTED) != null;
+
+        try
+        {
+            load();
+            if (lock == null)
+            {
+                log.warn("Another client is writing {}; MiniStreak changes here are held until it exits", dir);
+            }
+            return true;
+        }
+        catch (IOException e)
+        {
+            if (!imported)
+            {
+                log.warn("MiniStreak state directory {} unusable; keeping state in config", dir, e);
+                failed = true;
+                values.clear();
+                releaseLock();
+                return false;
+            }
+            // the config copies stopped at the import; serving those (or nothing) as real would
+            // let the next save overwrite the files
+            log.warn("MiniStreak state directory {} unreadable; not saving until it can be read", dir, e);
+            markUnavailable();
+            return true;
+        }
+    }
+
+    /**
+     * (Re)read the files into {@code values}, taking the lock if it is free. The owner also
+     * moves a corrupt snapshot aside (keeping whatever the journal has) and does the one-time
+     * import from config.
+     */
+    private void load() throws IOException
+    {
+        Files.createDirectories(dir);
+        if (journal == null)
+        {
+            journal = FileChannel.open(dir.resolve(JOURNAL),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+        if (lockFile == null)
+        {
+            lockFile = FileChannel.open(dir.resolve(LOCK), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        }
+        if (lock == null) lock = tryLock(lockFile);
+
+        values.clear();
+        final Path snapshot = dir.resolve(SNAPSHOT);
+        final boolean hasSnapshot = Files.exists(snapshot);
+        boolean rewrite = false;
+        if (hasSnapshot && !readSnapshot(snapshot))
+        {
+            values.clear();
+            if (lock != null)
+            {
+                final Path aside = dir.resolve(SNAPSHOT + ".bad-" + System.currentTimeMillis());
+                Files.move(snapshot, aside, StandardCopyOption.REPLACE_EXISTING);
+                log.warn("Corrupt MiniStreak snapshot moved to {}; recovering from the journal", aside);
+                rewrite = true;
+            }
+            else
+            {
+                log.warn("Corrupt MiniStreak snapshot in {}; reading the journal only", dir);
+            }
+        }
+        replayJournal();
+
+        // the owner does the import; reading its half-written files here would only race it
+        if (lock == null) return;
+
+        if (!hasSnapshot && !imported)
+        {
+            importFromConfig();
+            rewrite = true;
+        }
+        if (rewrite) compact();
+        if (!imported)
+        {
+            fallback.set(KEY_IMPORTED, "true");
+            imported = true;
+        }
+    }
+
+    private static FileLock tryLock(FileChannel channel) throws IOException
+    {
+        try
+        {
+            return channel.tryLock();
+        }
+        catch (OverlappingFileLockException e)
+        {
+            return null; // held by another store in this JVM
+        }
+    }
+
+    /**
+     * Re-read the files (the owner may have moved on) and lay our unwritten batch on top.
+     * @return false, with the store unavailable, if they can't be read
+     */
+    private boolean reload()
+    {
+        try
+        {
+            load();
+        }
+        catch (IOException e)
+        {
+            // the batch stays for later; don't lay it over a half-read view
+            log.warn("Failed to read MiniStreak state in {}", dir, e);
+            markUnavailable();
+            return false;
+        }
+        if (unavailable)
+        {
+            unavailable = false;
+            log.info("MiniStreak state directory {} readable again", dir);
+        }
+
+        final ByteBuffer mine = batch.duplicate();
+        mine.flip();
+        applyRecords(mine);
+        return true;
+    }
+
+    /** Not the writer yet (or the files were unreadable): reload and report whether the lock is ours now. */
+    private boolean takeOver()
+    {
+        if (!reload() || lock == null) return false;
+        log.info("MiniStreak now writing {}", dir);
+        return true;
+    }
+
+    private void markUnavailable()
+    {
+        unavailable = true;
+        values.clear();
+        releaseLock();
+    }
+
+    private void releaseLock()
+    {
+        if (lock == null) return;
+        try
+        {
+            lock.release();
+        }
+        catch (IOException ignored)
+        {
+        }
+        lock = null;
+    }
+
+    /** @return false (values partly filled) if the file is not an intact snapshot */
+    private boolean readSnapshot(Path snapshot) throws IOException
+    {
+        final ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(snapshot));
+        if (buf.remaining() < 12 || buf.getInt() != SNAPSHOT_MAGIC) return false;
+
+        final CRC32 crc = new CRC32();
+        crc.update(buf.array(), 0, buf.limit() - 4);
+        if ((int) crc.getValue() != buf.getInt(buf.limit() - 4)) return false;
+
+        try
+        {
+            final int count = buf.getInt();
+            for (int i = 0; i < count; i++)
+            {
+                values.put(readString(buf), readString(buf));
+            }
+            return true;
+        }
+        catch (RuntimeException e)
+        {
+            return false;
+        }
+    }
+
+    /** Apply intact records; the owner cuts the file at the first torn/corrupt one. */
+    private void replayJournal() throws IOException
+    {
+        final long size = journal.size();
+        if (size == 0) return;
+
+        final ByteBuffer buf = ByteBuffer.allocate((int) Math.min(size, Integer.MAX_VALUE));
+        while (buf.hasRemaining() && journal.read(buf, buf.position()) > 0) { /* fill */ }
+        buf.flip();
+
+        final int good = applyRecords(buf);
+        if (lock == null) return; // a torn tail may just be the owner mid-write
+
+        if (good < size)
+        {
+            log.warn("Dropping {} trailing bytes of the MiniStreak journal", size - good);
+            journal.truncate(good);
+            journal.force(false);
+        }
+        journal.position(good);
+    }
+
+    /** Apply framed records from {@code buf} until the first bad one; @return end of the last good one. */
+    private int applyRecords(ByteBuffer buf)
+    {
+        final CRC32 crc = new CRC32();
+        int good = 0;
+        while (buf.remaining() >= 8)
+        {
+            final int len = buf.getInt();
+            final int sum = buf.getInt();
+            if (len <= 0 || len > MAX_RECORD || len > buf.remaining()) break;
+
+            crc.reset();
+            crc.update(buf.array(), buf.position(), len);
+            if ((int) crc.getValue() != sum) break;
+
+            final int end = buf.position() + len;
+            final byte op = buf.get();
+            final String key = readString(buf);
+            if (op == OP_SET) values.put(key, readString(buf));
+            else values.remove(key);
+
+            buf.position(end);
+            good = end;
+        }
+        return good;
+    }
+
+    private void importFromConfig()
+    {
+        final String prefix = ConfigStateStore.GROUP + ".";
+        final List<String> keys = configManager.getConfigurationKeys(prefix);
+        if (keys != null)
+        {
+            for (String k : keys)
+            {
+                final String key = k.substring(prefix.length());
+                final String v = fallback.get(key);
+                if (v != null) values.put(key, v);
+            }
+        }
+
+        // never-migrated installs still have these in the old group; get() moves them
+        for (String key : ConfigStateStore.LEGACY_KEYS)
+        {
+            final String v = fallback.get(key);
+            if (v != null) values.putIfAbsent(key, v);
+        }
+    }
+
+    // --- Writing ---
+
+    private void append(byte op, String key, String value)
+    {
+        final byte[] k = key.getBytes(StandardCharsets.UTF_8);
+        final byte[] v = (value == null) ? null : value.getBytes(StandardCharsets.UTF_8);
+        final int len = 1 + 4 + k.length + (v == null ? 0 : 4 + v.length);
+
+        ensureBatchSpace(8 + len);
+        final int start = batch.position() + 8;
+        batch.putInt(len).putInt(0);
+        batch.put(op).putInt(k.length).put(k);
+        if (v != null) batch.putInt(v.length).put(v);
+
+        final CRC32 crc = new CRC32();
+        crc.update(batch.array(), start, len);
+        batch.putInt(start - 4, (int) crc.getValue());
+    }
+
+    private void ensureBatchSpace(int n)
+    {
+        if (batch.remaining() >= n) return;
+        final ByteBuffer grown = ByteBuffer.allocate(Math.max(batch.capacity() * 2, batch.position() + n));
+        batch.flip();
+        grown.put(batch);
+        batch = grown;
+    }
+
+    /** Whole map to a fresh snapshot, then an empty journal. */
+    private void compact() throws IOException
+    {
+        int size = 12;
+        final Map<byte[], byte[]> encoded = new HashMap<>();
+        for (Map.Entry<String, String> e : values.entrySet())
+        {
+            final byte[] k = e.getKey().getBytes(StandardCharsets.UTF_8);
+            final byte[] v = e.getValue().getBytes(StandardCharsets.UTF_8);
+            encoded.put(k, v);
+            size += 8 + k.length + v.length;
+        }
+
+        final ByteBuffer buf = ByteBuffer.allocate(size);
+        buf.putInt(SNAPSHOT_MAGIC).putInt(encoded.size());
+        for (Map.Entry<byte[], byte[]> e : encoded.entrySet())
+        {
+            buf.putInt(e.getKey().length).put(e.getKey());
+            buf.putInt(e.getValue().length).put(e.getValue());
+        }
+        final CRC32 crc = new CRC32();
+        crc.update(buf.array(), 0, buf.position());
+        buf.putInt((int) crc.getValue());
+        buf.flip();
+
+        final Path tmp = dir.resolve(SNAPSHOT + ".tmp");
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))
+        {
+            while (buf.hasRemaining()) out.write(buf);
+            out.force(true);
+        }
+        Files.move(tmp, dir.resolve(SNAPSHOT), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        // a crash before this point just replays records the snapshot already holds
+        journal.truncate(0);
+        journal.position(0);
+        journal.force(false);
+    }
+
+    private static String readString(ByteBuffer buf)
+    {
+        final int n = buf.getInt();
+        if (n < 0 || n > buf.remaining()) throw new IllegalArgumentException("bad length " + n);
+        final String s = new String(buf.array(), buf.position(), n, StandardCharsets.UTF_8);
+        buf.position(buf.position() + n);
+        return s;
+    }
+}
@@ -3,6 +3,10 @@ package com.birdwatcher52.ministreak;
 import net.runelite.client.config.Config;
 import net.runelite.client.config.ConfigGroup;
 import net.runelite.client.config.ConfigItem;
+import net.runelite.client.config.Range;
+
+import java.util.EnumSet;
+import java.util.Set;
 
 @ConfigGroup("ministreak")
 public interface MiniStreakConfig extends Config
@@ -38,4 +42,37 @@ public interface MiniStreakConfig extends Config
             position = 3
     )
     default boolean showNativeIcon() { return true; }
+
+    @ConfigItem(
+            keyName = "requiredTasks",
+            name = "Required Minis",
+            description = "Mini tasks that must all be done for a day to count. None selected means all. Changes apply from today; earlier days keep the set they were played under.",
+            position = 4
+    )
+    default Set<MiniTask> requiredTasks() { return EnumSet.allOf(MiniTask.class); }
+
+    @Range(min = -12, max = 14)
+    @ConfigItem(
+            keyName = "resetOffsetHours",
+            name = "Reset Offset (hours)",
+            description = "Move the daily reset from 00:00 UTC; +2 resets at 00:00 in UTC+2. Changing it keeps today's progress and your streak.",
+            position = 5
+    )
+    default int resetOffsetHours() { return 0; }
+
+    @ConfigItem(
+            keyName = "showOverlay",
+            name = "Show Overlay",
+            description = "Show the streak, today's minis and the reset countdown in-game.",
+            position = 6
+    )
+    default boolean showOverlay() { return true; }
+
+    @ConfigItem(
+            keyName = "showInfoBox",
+            name = "Show Reset InfoBox",
+            description = "Show an infobox counting down to the next daily reset.",
+            position = 7
+    )
+    default boolean showInfoBox() { return true; }
 }
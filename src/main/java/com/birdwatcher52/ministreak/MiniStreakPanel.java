@@ -1,27 +1,53 @@
 package com.birdwatcher52.ministreak;
 
+import com.birdwatcher52.ministreak.util.LatencyHistogram;
 import net.runelite.client.ui.PluginPanel;
 
 import javax.swing.*;
 import java.awt.*;
-import java.time.*;
-import java.time.temporal.ChronoUnit;
-
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Sidebar panel. Reads only immutable {@link StreakSnapshot}s: the client thread signals a new one
+ * via onSnapshot(), which keeps at most one EDT update queued; the countdown and diagnostics tick
+ * on a Swing timer while the panel is showing.
+ */
 final class MiniStreakPanel extends PluginPanel
 {
     private final JLabel title = new JLabel("MiniStreak");
     private final JLabel streak = new JLabel("Streak: 0");
     private final JLabel best = new JLabel("Best: 0");
-    private final JLabel today = new JLabel("Today: BIRD–  HERB–");
-    private final JLabel nextReset = new JLabel("Next UTC reset: —");
+    private final JLabel today = new JLabel("Today: –");
+    private final JLabel nextReset = new JLabel("Next reset: —");
+
+    // Debug buttons (shown only if config.debugMode); one "Mark" button per task
+    private final JButton[] btnMark = new JButton[MiniTask.ALL.length];
+    private final JButton btnForceRoll = new JButton("Force Day Roll");
+
+    // Diagnostics (inside the debug row, collapsed by default)
+    private final JToggleButton btnDiagnostics = new JToggleButton("Diagnostics");
+    private final JButton btnResetDiagnostics = new JButton("Reset stats");
+    private final JTextArea diagnostics = new JTextArea();
+
+    private final UtcClock clock;
+    private final PluginMetrics metrics;
+    private final StreakSnapshots snapshots;
 
-    // Debug buttons (shown only if config.debugMode)
-    private final JButton btnMarkBird = new JButton("Mark Birdhouse");
-    private final JButton btnMarkHerb = new JButton("Mark Herb");
-    private final JButton btnForceRoll = new JButton("Force UTC Roll");
+    // at most one snapshot update queued on the EDT; shownVersion is EDT-only
+    private final AtomicBoolean updateQueued = new AtomicBoolean();
+    private long shownVersion = -1;
 
-    MiniStreakPanel()
+    // countdown + diagnostics, 1 Hz while showing
+    private final Timer uiTimer = new Timer(1000, e -> onUiTimer());
+
+    MiniStreakPanel(UtcClock clock, PluginMetrics metrics, StreakSnapshots snapshots)
     {
+        this.clock = clock;
+        this.metrics = metrics;
+        this.snapshots = snapshots;
+
         setLayout(new GridBagLayout());
         setBorder(BorderFactory.createEmptyBorder(8, 8, 8, 8));
 
@@ -41,10 +67,36 @@ final class MiniStreakPanel extends PluginPanel
         c.gridy++; c.insets = new Insets(6,0,10,0); add(nextReset, c);
 
         // Debug row (hidden by default; plugin will toggle visibility)
-        JPanel debugRow = new JPanel(new GridLayout(0,1,0,6));
-        debugRow.add(btnMarkBird);
-        debugRow.add(btnMarkHerb);
-        debugRow.add(btnForceRoll);
+        JPanel debugButtons = new JPanel(new GridLayout(0,1,0,6));
+        for (MiniTask task : MiniTask.ALL)
+        {
+            btnMark[task.ordinal()] = new JButton("Mark " + task.getLabel());
+            debugButtons.add(btnMark[task.ordinal()]);
+        }
+        debugButtons.add(btnForceRoll);
+        debugButtons.add(btnDiagnostics);
+
+        diagnostics.setEditable(false);
+        diagnostics.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 10));
+        diagnostics.setVisible(false);
+        btnResetDiagnostics.setVisible(false);
+
+        JPanel debugRow = new JPanel(new BorderLayout(0,6));
+        debugRow.add(debugButtons, BorderLayout.NORTH);
+        debugRow.add(diagnostics, BorderLayout.CENTER);
+        debugRow.add(btnResetDiagnostics, BorderLayout.SOUTH);
+
+        btnDiagnostics.addActionListener(e -> {
+            boolean open = btnDiagnostics.isSelected();
+            diagnostics.setVisible(open);
+            btnResetDiagnostics.setVisible(open);
+            if (open) updateDiagnostics();
+            revalidate();
+        });
+        btnResetDiagnostics.addActionListener(e -> {
+            metrics.reset();
+            updateDiagnostics();
+        });
 
         c.gridy++; c.insets = new Insets(0,0,0,0);
         add(debugRow, c);
@@ -62,33 +114,98 @@ final class MiniStreakPanel extends PluginPanel
         repaint();
     }
 
-    void wireDebug(Runnable markBird, Runnable markHerb, Runnable forceRoll)
+    void wireDebug(Consumer<MiniTask> mark, Runnable forceRoll)
     {
-        btnMarkBird.addActionListener(e -> markBird.run());
-        btnMarkHerb.addActionListener(e -> markHerb.run());
+        for (MiniTask task : MiniTask.ALL)
+        {
+            btnMark[task.ordinal()].addActionListener(e -> mark.accept(task));
+        }
         btnForceRoll.addActionListener(e -> forceRoll.run());
     }
 
-    void refresh(StreakState s)
+    /** A new snapshot was published; any thread. Collapses bursts into one EDT update. */
+    void onSnapshot()
     {
-        SwingUtilities.invokeLater(() -> {
-            streak.setText("Streak: " + s.getCurrentStreak());
-            best.setText("Best: " + s.getBestStreak());
+        if (updateQueued.compareAndSet(false, true))
+        {
+            SwingUtilities.invokeLater(this::applySnapshot);
+        }
+    }
 
-            String todayStr = LocalDate.now(ZoneOffset.UTC).toString();
-            String bird = todayStr.equals(s.getLastBirdhouseDateUTC()) ? "✅" : "–";
-            String herb = todayStr.equals(s.getLastHerbDateUTC()) ? "✅" : "–";
-            today.setText("Today: BIRD " + bird + "   HERB " + herb);
+    private void applySnapshot()
+    {
+        updateQueued.set(false);
+        final StreakSnapshot s = snapshots.latest();
+        if (s.version == shownVersion) return;
+        shownVersion = s.version;
+
+        streak.setText("Streak: " + s.currentStreak);
+        best.setText("Best: " + s.bestStreak);
+
+        StringBuilder sb = new StringBuilder("Today:");
+        for (MiniTask task : MiniTask.ALL)
+        {
+            if (!s.isRequired(task)) continue; // optional minis aren't shown
+            sb.append(sb.length() > 6 ? "   " : " ").append(task.getShortLabel()).append(' ')
+                    .append(s.isDone(task) ? "✅" : "–");
+        }
+        today.setText(sb.toString());
+
+        nextReset.setText("Next reset: " + timeUntilReset());
+    }
 
-            nextReset.setText("Next UTC reset: " + timeUntilUtcMidnight());
-        });
+    private void onUiTimer()
+    {
+        final String text = "Next reset: " + timeUntilReset();
+        if (!text.equals(nextReset.getText())) nextReset.setText(text);
+
+        if (diagnostics.isShowing()) updateDiagnostics();
+    }
+
+    @Override
+    public void addNotify()
+    {
+        super.addNotify();
+        shownVersion = -1; // catch up on whatever was published while hidden
+        applySnapshot();
+        uiTimer.start();
+    }
+
+    @Override
+    public void removeNotify()
+    {
+        uiTimer.stop();
+        super.removeNotify();
+    }
+
+    private void updateDiagnostics()
+    {
+        StringBuilder sb = new StringBuilder(512);
+        sb.append(String.format("%-19s %6s %6s %6s %6s%n", "handler", "n", "p50", "p99", "max"));
+        for (PluginMetrics.Probe p : PluginMetrics.Probe.values())
+        {
+            LatencyHistogram h = metrics.get(p);
+            sb.append(String.format("%-19s %6d %6s %6s %6s%n", p.getLabel(), h.count(),
+                    micros(h.percentileNanos(0.50)), micros(h.percentileNanos(0.99)), micros(h.maxNanos())));
+        }
+        for (PluginMetrics.Counter k : PluginMetrics.Counter.values())
+        {
+            sb.append(String.format("%-19s %6d%n", k.getLabel(), metrics.get(k)));
+        }
+        if (!metrics.isEnabled()) sb.append("(recording off)");
+        diagnostics.setText(sb.toString());
+    }
+
+    /** Nanoseconds as a short microsecond string, e.g. "12µs" / "1.4ms". */
+    private static String micros(long nanos)
+    {
+        if (nanos < 1_000_000L) return (nanos / 1_000L) + "µs";
+        return String.format("%.1fms", nanos / 1_000_000.0);
     }
 
-    private String timeUntilUtcMidnight()
+    private String timeUntilReset()
     {
-        ZonedDateTime now = ZonedDateTime.now(ZoneOffset.UTC);
-        ZonedDateTime nextMidnight = now.truncatedTo(ChronoUnit.DAYS).plusDays(1);
-        Duration d = Duration.between(now, nextMidnight);
+        Duration d = Duration.ofMillis(Math.max(0, clock.nextResetMillis() - clock.millis()));
         long h = d.toHours();
         long m = d.minusHours(h).toMinutes();
         return String.format("%dh %02dm", h, m);
@@ -6,12 +6,15 @@ import com.google.inject.Provides;
 import javax.inject.Inject;
 import java.awt.Color;
 import java.awt.image.BufferedImage;
-import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import lombok.extern.slf4j.Slf4j;
 
-import net.runelite.api.ChatMessageType;
 import net.runelite.api.Client;
 import net.runelite.api.GameState;
-import net.runelite.api.ScriptID;
 import net.runelite.api.events.ChatMessage;
 import net.runelite.api.events.GameStateChanged;
 import net.runelite.api.events.GameTick;
@@ -26,24 +29,36 @@ import net.runelite.client.plugins.Plugin;
 import net.runelite.client.plugins.PluginDescriptor;
 import net.runelite.client.ui.ClientToolbar;
 import net.runelite.client.ui.NavigationButton;
+import net.runelite.client.ui.overlay.OverlayManager;
+import net.runelite.client.ui.overlay.infobox.InfoBoxManager;
 import net.runelite.client.util.ImageUtil;
-import net.runelite.client.util.Text;
 
 @PluginDescriptor(
         name = "MiniStreak",
         description = "Help stay consistent with planting herbs and setting up birdhouses",
         tags = {"streak", "daily", "birdhouse", "herb", "ministreak"}
 )
+@Slf4j
 public class MiniStreakPlugin extends Plugin
 {
     @Inject private MiniStreakConfig config;
     @Inject private ConfigManager configManager;
     @Inject private MiniStreakStorage storage;
+    @Inject private StreakProfiles profiles;
     @Inject private ClientToolbar clientToolbar;
+    @Inject private OverlayManager overlayManager;
+    @Inject private InfoBoxManager infoBoxManager;
+    @Inject private StreakOverlay overlay;
     @Inject private ToastService toast;
     @Inject private Notifier notifier;
 
     @Inject private DailyAnnouncer dailyAnnouncer;
+    @Inject private UtcClock clock;
+    @Inject private RolloverScheduler rollover;
+    @Inject private StreakSnapshots snapshots;
+    @Inject private CommandInbox inbox;
+    @Inject private PluginMetrics metrics;
+    @Inject private ScheduledExecutorService executor;
 
     @Inject private Client client;
     @Inject private ClientThread clientThread;
@@ -57,64 +72,158 @@ public class MiniStreakPlugin extends Plugin
     private final DailyCompletionService completeService = new DailyCompletionService();
 
     private StreakState state;
+    private long account = MiniStreakStorage.NO_ACCOUNT;
     private MiniStreakPanel panel;
+    private Runnable panelListener;
     private NavigationButton navButton;
+    private ResetCountdownInfoBox infoBox;
+
+    // last values sent out as StreakChanged
+    private int publishedStreak = -1;
+    private StreakEmblems publishedEmblem = null;
 
-    private boolean birdhouseMarkedThisTick = false;
-    private boolean herbMarkedThisTick = false;
+    private final ChatTriggers triggers = new ChatTriggers();
+
+    // today's progress toasts share a key, so a completion supersedes a still-queued halfway toast
+    private static final String TOAST_TODAY = "today";
 
     private final TinyWav wav = new TinyWav();
 
+    private static final long SHUTDOWN_WAIT_MS = 2_000;
+
     @Override
     protected void startUp() throws Exception
     {
+        final long startNs = System.nanoTime();
+
         // Register our decorator listeners
         eventBus.register(nameDecorator);
 
         // Reset helpers
         modicons.reset();
         nameDecorator.reset();
+        metrics.reset();
+        metrics.setEnabled(config.debugMode());
 
         // Register sounds
-        wav.registerResource("chime", "/com/birdwatcher52/ministreak/chime.wav");
-        wav.registerResource("mini_chime", "/com/birdwatcher52/ministreak/mini_chime.wav");
+        wav.setStartLatencyHistogram(metrics.get(PluginMetrics.Probe.SOUND_START));
+        loadSound("chime", "/com/birdwatcher52/ministreak/chime.wav");
+        loadSound("mini_chime", "/com/birdwatcher52/ministreak/mini_chime.wav");
 
-        state = new StreakState();
-        storage.loadInto(state);
+        // Active account's profile; before login, show whoever played last
+        account = (client.getGameState() == GameState.LOGGED_IN) ? client.getAccountHash() : storage.getLastAccount();
+        state = profiles.get(account);
 
-        panel = new MiniStreakPanel();
+        panel = new MiniStreakPanel(clock, metrics, snapshots);
         panel.setDebugVisible(config.debugMode());
+        // Every state mutation goes through the inbox; it runs them on the client thread
+        inbox.setFlush(this::flushBatch);
         panel.wireDebug(
-                this::handleBirdhouseMark,
-                this::handleHerbMark,
-                () -> { forceRollOnce(); storage.save(state); panel.refresh(state); }
+                task -> inbox.submit(() -> handleMark(task)),
+                () -> inbox.submit(this::forceRollOnce)
         );
+        snapshots.reset();
+        panelListener = panel::onSnapshot;
+        snapshots.addListener(panelListener);
 
-        if (config.showSidebar())
-        {
-            ensureNavButton();
-            clientToolbar.addNavigation(navButton);
-        }
+        updateNavButton();
+        updateOverlays();
 
         // Kick emblem install; nameDecorator will activate once native learned + emblem ready
         modicons.ensureInstalled(config.streakEmblem());
 
         // Feed current streak into the decorator
-        nameDecorator.setCurrentStreak(state.getCurrentStreak());
+        publishedStreak = -1;
+        publishedEmblem = null;
+        publishStreakIfChanged();
+
+        clientThread.invoke(this::publishSnapshot);
+
+        // Day rolls come from one timer at the reset instant, not from ticks
+        clock.setOffsetMinutes(config.resetOffsetHours() * 60);
+        inbox.submit(this::adoptProfile); // the profile may have been saved under another offset or set
+        rollover.start(this::onDayRoll);
+        rollover.catchUp(); // the stored profile may be from an earlier day (enabled mid-session)
 
-        panel.refresh(state);
+        metrics.record(PluginMetrics.Probe.START_UP, System.nanoTime() - startNs);
+    }
+
+    /** Decode off-thread; a play() that beats the decode is held briefly, then dropped. */
+    private void loadSound(String key, String path)
+    {
+        final long t = System.nanoTime();
+        wav.registerResourceAsync(key, path, executor).whenComplete((v, err) ->
+        {
+            if (err != null)
+            {
+                log.warn("Failed to load MiniStreak sound {}", path, err);
+                return;
+            }
+            metrics.record(PluginMetrics.Probe.SOUND_LOAD, System.nanoTime() - t);
+        });
     }
 
     @Override
     protected void shutDown()
     {
-        storage.save(state);
+        rollover.stop();
+
+        // State is only touched on the client thread: run what's queued and stage the final save
+        // there, then push the write-behind batch out from here. Whichever side claims first wins:
+        // a final save that starts after we gave up would land in a stopped (or restarted) plugin.
+        final AtomicBoolean claimed = new AtomicBoolean(false);
+        final CountDownLatch staged = new CountDownLatch(1);
+        clientThread.invoke(() ->
+        {
+            if (!claimed.compareAndSet(false, true)) return;
+            try
+            {
+                inbox.drain();
+                inbox.setFlush(null);
+                inbox.clear();
+                saveState();
+                profiles.saveAll();
+                profiles.clear();
+            }
+            finally
+            {
+                staged.countDown();
+            }
+        });
+        try
+        {
+            if (!staged.await(SHUTDOWN_WAIT_MS, TimeUnit.MILLISECONDS))
+            {
+                if (claimed.compareAndSet(false, true))
+                {
+                    log.warn("MiniStreak shut down before its final save ran");
+                    inbox.clear(); // nothing queued may run in a later session
+                }
+                else
+                {
+                    staged.await(); // already running; it only stages, so it is quick
+                }
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        storage.flush();
 
         if (navButton != null)
         {
             clientToolbar.removeNavigation(navButton);
             navButton = null;
         }
+        overlayManager.remove(overlay);
+        if (infoBox != null)
+        {
+            infoBoxManager.removeInfoBox(infoBox);
+            infoBox = null;
+        }
+        snapshots.removeListener(panelListener);
+        panelListener = null;
         panel = null;
 
         // Unregister listeners
@@ -122,132 +231,237 @@ public class MiniStreakPlugin extends Plugin
 
         modicons.reset();
         nameDecorator.reset();
+        wav.close();
     }
 
     @Subscribe
     public void onGameStateChanged(GameStateChanged e)
     {
+        modicons.onGameStateChanged(e.getGameState());
+
         if (e.getGameState() == GameState.LOGGED_IN)
         {
-            modicons.ensureInstalled(config.streakEmblem());
-            dailyAnnouncer.maybeNotifyOnLogin(state);
+            final long hash = client.getAccountHash();
+            inbox.submit(() -> switchAccount(hash));
+            rollover.catchUp(); // this profile may not have seen today yet
+            inbox.submit(() -> dailyAnnouncer.maybeNotifyOnLogin(state));
         }
     }
 
-    @Subscribe
-    public void onGameTick(GameTick tick)
+    /** Swap in the profile for {@code next}; cheap for recently used accounts (in-memory LRU). */
+    private void switchAccount(long next)
+    {
+        if (next == account || next == MiniStreakStorage.NO_ACCOUNT) return;
+
+        saveState();
+        account = next;
+        state = profiles.get(next);
+        adoptProfile();
+        storage.setLastAccount(next);
+    }
+
+    /** Bring the active profile in line with the config: day numbering first, then the required set. */
+    private void adoptProfile()
     {
-        // emblem retry loop (short-lived)
-        modicons.tickRetry();
-
-        // Detect UTC day roll
-        final String seenBefore = state.getLastSeenDateUTC();
-        resetService.handleDailyRoll(state);
-        final String seenAfter = state.getLastSeenDateUTC();
-        if (!seenAfter.equals(seenBefore))
+        alignDays();
+        applyRequiredTasks();
+    }
+
+    /**
+     * Renumber the active profile's days if they were counted under another reset offset. Other
+     * profiles (cached or stored) keep theirs until they become active, so each shifts once.
+     */
+    private void alignDays()
+    {
+        final int minutes = clock.getOffsetMinutes();
+        final int saved = state.getOffsetMinutes();
+        if (saved != StreakState.NO_OFFSET && saved != minutes)
         {
-            dailyAnnouncer.maybeNotifyOnReset(state);
+            state.shiftDays(clock.shiftFrom(saved));
         }
+        state.setOffsetMinutes(minutes);
+    }
 
-        birdhouseMarkedThisTick = false;
-        herbMarkedThisTick = false;
+    /** The configured required set, for the active profile from today on. */
+    private void applyRequiredTasks()
+    {
+        completeService.onRequiredChanged(state, MiniTask.mask(config.requiredTasks()), clock.today());
+    }
 
-        toast.processQueue();
+    /** After each inbox batch: one save, one snapshot, one StreakChanged at most. */
+    private void flushBatch()
+    {
+        // no-op unless a field actually changed; writes are debounced off-thread
+        saveState();
+        publishSnapshot();
+        publishStreakIfChanged();
+    }
 
-        storage.save(state);
-        if (panel != null) panel.refresh(state);
+    /** Hand UI readers a fresh immutable snapshot if anything they show changed. Client thread. */
+    private void publishSnapshot()
+    {
+        snapshots.publish(state, clock.today());
+    }
 
-        // keep decorator in sync with streak
-        nameDecorator.setCurrentStreak(state.getCurrentStreak());
+    private void saveState()
+    {
+        storage.save(account, state);
     }
 
-    // ---- Daily detection (unchanged) ----
     @Subscribe
-    public void onChatMessage(ChatMessage e)
+    public void onGameTick(GameTick tick)
     {
-        final ChatMessageType t = e.getType();
+        final long t = metrics.start();
+        runTick();
+        metrics.stop(PluginMetrics.Probe.GAME_TICK, t);
+    }
 
-        if (t == ChatMessageType.GAMEMESSAGE || t == ChatMessageType.SPAM)
-        {
-            final String msg = Text.removeTags(e.getMessage()).toLowerCase(Locale.ROOT);
+    private void runTick()
+    {
+        // No date work here; day rolls arrive via onDayRoll
+        triggers.newTick();
 
-            if (!birdhouseMarkedThisTick
-                    && (msg.contains("birdhouse") || msg.contains("bird house"))
-                    && msg.contains("trap is now full")
-                    && (msg.contains("will start to catch birds") || msg.contains("will begin to catch birds")))
-            {
-                birdhouseMarkedThisTick = true;
-                handleBirdhouseMark();
-                return;
-            }
+        toast.processQueue();
+    }
 
-            if (!herbMarkedThisTick
-                    && msg.startsWith("you plant")
-                    && msg.contains("seed in the herb patch"))
-            {
-                herbMarkedThisTick = true;
-                handleHerbMark();
-            }
-        }
+    /** Rollover timer / catch-up. */
+    private void onDayRoll(int today)
+    {
+        inbox.submit(() -> rollDay(today));
+    }
+
+    /**
+     * A new offset can renumber the day being played (+14h at 11:00 UTC is already tomorrow).
+     * That is not a day passing: today's progress and the streak move with it instead of rolling.
+     */
+    private void applyResetOffset()
+    {
+        clock.setOffsetMinutes(config.resetOffsetHours() * 60);
+        alignDays();
+        rollover.catchUp(); // re-arm for the new boundary
     }
 
-    private void handleBirdhouseMark()
+    /** Idempotent per day. */
+    private void rollDay(int today)
     {
-        final boolean noneDoneYet = !state.birdhouseDoneTodayUTC() && !state.herbDoneTodayUTC();
-        final String prevDaily = state.getLastCompletionDateUTC();
-        completeService.onBirdhouseMarked(state);
+        if (state == null) return;
+
+        final int seenBefore = state.getLastSeenDay();
+        resetService.handleDailyRoll(state, today);
+        if (state.getLastSeenDay() == seenBefore) return;
+
+        dailyAnnouncer.maybeNotifyOnReset(state);
+    }
 
-        if (noneDoneYet) notifyHalfway();
+    // ---- Daily detection ----
+    @Subscribe
+    public void onChatMessage(ChatMessage e)
+    {
+        final long t = metrics.start();
 
-        if (!prevDaily.equals(state.getLastCompletionDateUTC()))
+        // One pass over the raw line; irrelevant lines fall out without allocating
+        final MiniTask task = triggers.detect(e.getType(), e.getMessage());
+        if (task != null)
         {
-            int streak = state.getCurrentStreak();
-            String dayWord = (streak == 1) ? "day" : "days";
-            toast.enqueue("Daily Mini Complete!", "Your current streak is " + streak + " " + dayWord + "!", Color.WHITE);
-            wav.play("chime", 100);
+            inbox.submit(() -> handleMark(task));
         }
 
-        storage.save(state);
-        if (panel != null) panel.refresh(state);
-
-        nameDecorator.setCurrentStreak(state.getCurrentStreak());
+        metrics.stop(PluginMetrics.Probe.CHAT_MESSAGE, t);
     }
 
-    private void handleHerbMark()
+    private void handleMark(MiniTask task)
     {
-        final boolean noneDoneYet = !state.birdhouseDoneTodayUTC() && !state.herbDoneTodayUTC();
-        final String prevDaily = state.getLastCompletionDateUTC();
-        completeService.onHerbMarked(state);
-
-        if (noneDoneYet) notifyHalfway();
+        final int today = clock.today();
+        final int required = state.getRequiredMask();
+        final boolean noneDoneYet = (state.progressOn(today) & required) == 0;
+        final int prevDaily = state.getLastCompletionDay();
+        completeService.onMarked(state, task, today);
+
+        // first required mini of the day, with more still to go
+        if (noneDoneYet && (task.bit() & required) != 0 && !state.isCompleteOn(today))
+        {
+            notifyHalfway(Integer.bitCount(required));
+        }
 
-        if (!prevDaily.equals(state.getLastCompletionDateUTC()))
+        if (prevDaily != state.getLastCompletionDay())
         {
             int streak = state.getCurrentStreak();
             String dayWord = (streak == 1) ? "day" : "days";
-            toast.enqueue("Daily Mini Complete!", "Your current streak is " + streak + " " + dayWord + "!", Color.WHITE);
+            toast.enqueue(TOAST_TODAY, ToastService.Priority.MILESTONE, "Daily Mini Complete!", "Your current streak is " + streak + " " + dayWord + "!", Color.WHITE);
             wav.play("chime", 100);
         }
-
-        storage.save(state);
-        if (panel != null) panel.refresh(state);
-
-        nameDecorator.setCurrentStreak(state.getCurrentStreak());
     }
 
-    private void notifyHalfway()
+    private void notifyHalfway(int requiredCount)
     {
-        try { notifier.notify("Halfway done (1/2)!"); } catch (Exception ignored) {}
+        final String progress = "(1/" + requiredCount + ")";
+        try { notifier.notify(requiredCount == 2 ? "Halfway done (1/2)!" : "First mini done " + progress + "!"); } catch (Exception ignored) {}
+        toast.enqueue(TOAST_TODAY, ToastService.Priority.HALFWAY, "Mini done " + progress, "Keep going to count today.", Color.WHITE);
         try { wav.play("mini_chime", 85); } catch (Exception ignored) {}
     }
 
     @Subscribe
     public void onConfigChanged(ConfigChanged e)
     {
-        if (!"ministreak".equals(e.getGroup())) return;
+        if (!"ministreak".equals(e.getGroup()) || e.getKey() == null) return;
+
+        // Runtime state lives in its own store, so only user-facing keys arrive here.
+        switch (e.getKey())
+        {
+            case "showSidebar":
+                updateNavButton();
+                break;
+            case "showOverlay":
+            case "showInfoBox":
+                updateOverlays();
+                break;
+            case "debugMode":
+                metrics.setEnabled(config.debugMode());
+                if (panel != null) panel.setDebugVisible(config.debugMode());
+                break;
+            case "resetOffsetHours":
+                inbox.submit(this::applyResetOffset);
+                break;
+            case "requiredTasks":
+                inbox.submit(this::applyRequiredTasks);
+                break;
+            case "streakEmblem":
+                // Installer rebuilds the chat prompt once the new sprite is in place
+                modicons.ensureInstalled(config.streakEmblem());
+                clientThread.invoke(this::publishStreakIfChanged);
+                break;
+            case "showNativeIcon":
+                // Decorator reads the toggle live; just redraw the input line
+                nameDecorator.refreshInput();
+                break;
+            default:
+                break;
+        }
+    }
+
+    /** Post StreakChanged only when the streak value or emblem differs from what listeners last saw. */
+    private void publishStreakIfChanged()
+    {
+        final int streak = state.getCurrentStreak();
+        final StreakEmblems emblem = config.streakEmblem();
+        if (streak == publishedStreak && emblem == publishedEmblem)
+        {
+            return;
+        }
+
+        publishedStreak = streak;
+        publishedEmblem = emblem;
+        eventBus.post(new StreakChanged(streak, emblem));
+    }
 
-        if (panel != null) panel.setDebugVisible(config.debugMode());
+    @Provides
+    MiniStreakConfig provideConfig(ConfigManager cm)
+    {
+        return cm.getConfig(MiniStreakConfig.class);
+    }
 
+    private void updateNavButton()
+    {
         if (config.showSidebar())
         {
             ensureNavButton();
@@ -257,49 +471,53 @@ public class MiniStreakPlugin extends Plugin
         {
             clientToolbar.removeNavigation(navButton);
         }
+    }
 
-        // Emblem selection or native toggle changes:
-        modicons.ensureInstalled(config.streakEmblem());
-
-        // Refresh input immediately to reflect toggle changes
-        clientThread.invoke(() -> client.runScript(ScriptID.CHAT_PROMPT_INIT));
+    private void updateOverlays()
+    {
+        if (config.showOverlay()) overlayManager.add(overlay);
+        else overlayManager.remove(overlay);
 
-        // Streak display depends on toggle/state; decorator reads config live.
-        nameDecorator.setCurrentStreak(state.getCurrentStreak());
+        if (config.showInfoBox() && infoBox == null)
+        {
+            infoBox = new ResetCountdownInfoBox(loadIcon(), this, snapshots, clock);
+            infoBoxManager.addInfoBox(infoBox);
+        }
+        else if (!config.showInfoBox() && infoBox != null)
+        {
+            infoBoxManager.removeInfoBox(infoBox);
+            infoBox = null;
+        }
     }
 
-    @Provides
-    MiniStreakConfig provideConfig(ConfigManager cm)
+    private BufferedImage loadIcon()
     {
-        return cm.getConfig(MiniStreakConfig.class);
+        return ImageUtil.loadImageResource(getClass(), "/com/birdwatcher52/ministreak/icon.png");
     }
 
     private void ensureNavButton()
     {
         if (navButton != null) return;
 
-        final BufferedImage icon =
-                ImageUtil.loadImageResource(getClass(), "/com/birdwatcher52/ministreak/icon.png");
-
         navButton = NavigationButton.builder()
                 .tooltip("MiniStreak")
                 .priority(-9999)
-                .icon(icon)
+                .icon(loadIcon())
                 .panel(panel)
                 .build();
     }
 
     private void forceRollOnce()
     {
+        final int today = clock.today();
+
         state.setCurrentStreak(0);
-        state.setLastSeenDateUTC("1900-01-01");
-        state.setLastBirdhouseDateUTC("");
-        state.setLastHerbDateUTC("");
-        state.setLastCompletionDateUTC("");
-        state.setLastAnnouncementDateUTC("");
-
-        resetService.handleDailyRoll(state);
-        storage.save(state);
-        if (panel != null) panel.refresh(state);
+        state.setLastSeenDay(today - 1); // any earlier day forces the roll path
+        state.setProgress(UtcClock.NO_DAY, 0);
+        state.setLastCompletionDay(UtcClock.NO_DAY);
+        state.setLastAnnouncementDay(UtcClock.NO_DAY);
+        state.setHistory(new CompletionHistory());
+
+        resetService.handleDailyRoll(state, today);
     }
 }
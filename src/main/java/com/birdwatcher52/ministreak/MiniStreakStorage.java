@@ -1,50 +1,311 @@
 package com.birdwatcher52.ministreak;
 
 import javax.inject.Inject;
-import net.runelite.client.config.ConfigManager;
+import javax.inject.Singleton;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Write-behind persistence for {@link StreakState}.
+ *
+ * save() is cheap enough to call every tick: it does nothing unless the state is dirty, else it
+ * stages the whole state as one {@link StateCodec} record and arms one debounced flush on the
+ * shared executor. flush() forces the pending batch out synchronously (used on shutDown).
+ *
+ * Records go to a {@link StateStore}, not the user-facing "ministreak" config group, one per
+ * account ("<accountHash>.state"), so load and save are one read and one write. Older data kept
+ * one key per field (schema 0); it is read once, rewritten as a record and removed. The
+ * pre-profile global record is moved into the first account that loads. A record this build
+ * can't read (newer schema after a downgrade, or damage) is left alone: that profile runs in
+ * memory only and is never written back; so does one loaded while the store is unavailable.
+ */
+@Slf4j
+@Singleton
 final class MiniStreakStorage
 {
-    private static final String GROUP = "ministreak";
+    private static final long FLUSH_DELAY_MS = 5_000;
+
+    static final long NO_ACCOUNT = -1L; // what Client#getAccountHash returns before login
+
+    private static final String KEY_STATE = "state";
+
+    // schema 0: one key per field
+    private static final String[] KEYS = {
+            "currentStreak", "bestStreak", "lastSeenDateUTC", "progressDateUTC", "progressMask",
+            "lastCompletionDateUTC", "lastAnnouncementDateUTC", "history",
+            // pre task-registry per-task days, replaced by progressDateUTC/progressMask
+            "lastBirdhouseDateUTC", "lastHerbDateUTC"
+    };
+    // set once the global record has been handed to a profile; holds that account
+    private static final String KEY_MIGRATED = "globalMigratedTo";
+    private static final String KEY_LAST_ACCOUNT = "lastAccount";
+
+    private final StateStore store;
+    private final ScheduledExecutorService executor;
+    private final PluginMetrics metrics;
+
+    // key -> latest value (null: unset); guarded by itself
+    private final Map<String, String> pending = new LinkedHashMap<>();
+    // accounts whose stored record we couldn't read; client thread only
+    private final Set<Long> readOnly = new HashSet<>();
+    private ScheduledFuture<?> scheduledFlush;
 
     @Inject
-    private ConfigManager configManager;
+    MiniStreakStorage(StateStore store, ScheduledExecutorService executor, PluginMetrics metrics)
+    {
+        this.store = store;
+        this.executor = executor;
+        this.metrics = metrics;
+    }
+
+    void save(long account, StreakState s)
+    {
+        final long t = metrics.start();
+        stage(account, s);
+        metrics.stop(PluginMetrics.Probe.STORAGE_SAVE, t);
+    }
+
+    private void stage(long account, StreakState s)
+    {
+        if (!s.isDirty()) return;
+        if (account == NO_ACCOUNT || readOnly.contains(account))
+        {
+            s.drainDirty(); // logged-out scratch state and unreadable profiles are never persisted
+            return;
+        }
+
+        s.drainDirty();
+        final String record = StateCodec.encode(s);
+        synchronized (pending)
+        {
+            pending.put(prefix(account) + KEY_STATE, record);
+            armFlush();
+        }
+    }
+
+    // caller holds pending
+    private void armFlush()
+    {
+        if (scheduledFlush == null)
+        {
+            scheduledFlush = executor.schedule(this::flush, FLUSH_DELAY_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /** Write out everything staged so far on the calling thread. */
+    void flush()
+    {
+        final Map<String, String> batch;
+        synchronized (pending)
+        {
+            if (scheduledFlush != null)
+            {
+                scheduledFlush.cancel(false);
+                scheduledFlush = null;
+            }
+            if (pending.isEmpty()) return;
+
+            batch = new LinkedHashMap<>(pending);
+            pending.clear();
+        }
+
+        for (Map.Entry<String, String> e : batch.entrySet())
+        {
+            try
+            {
+                if (e.getValue() == null) store.unset(e.getKey());
+                else store.set(e.getKey(), e.getValue());
+            }
+            catch (Exception ex)
+            {
+                log.warn("Failed to persist MiniStreak key {}", e.getKey(), ex);
+            }
+        }
+        store.commit();
+    }
+
+    /** Account whose profile was active last, so the panel has something to show before login. */
+    long getLastAccount()
+    {
+        final String v = store.get(KEY_LAST_ACCOUNT);
+        if (v == null) return NO_ACCOUNT;
+        try
+        {
+            return Long.parseLong(v.trim());
+        }
+        catch (NumberFormatException e)
+        {
+            return NO_ACCOUNT;
+        }
+    }
+
+    void setLastAccount(long account)
+    {
+        if (account == NO_ACCOUNT) return;
+        synchronized (pending)
+        {
+            pending.put(KEY_LAST_ACCOUNT, Long.toString(account));
+            armFlush();
+        }
+    }
+
+    void loadInto(long account, StreakState s)
+    {
+        if (account == NO_ACCOUNT) return; // stays a blank scratch state
+        readOnly.remove(account);
+        if (!store.isAvailable())
+        {
+            // nothing read is not the same as nothing stored: no migration, and never save over it
+            log.warn("MiniStreak state unavailable for account {}; not saving this profile until it loads again", account);
+            readOnly.add(account);
+            return;
+        }
+
+        final String p = prefix(account);
+        final String record = read(p + KEY_STATE);
+        if (record != null)
+        {
+            if (StateCodec.decode(record, s))
+            {
+                s.drainDirty();
+            }
+            else
+            {
+                // newer schema (downgrade) or damage: don't replace it with the blank state
+                log.warn("Unreadable MiniStreak state for account {}; not saving this profile until it loads again", account);
+                readOnly.add(account);
+            }
+            return;
+        }
+
+        if (hasKeys(p))
+        {
+            loadKeys(p, s);
+            rewrite(p, account, s);
+        }
+        else if (store.get(KEY_MIGRATED) == null && hasKeys(""))
+        {
+            // First profile ever: it inherits the global (pre-profile) record
+            store.set(KEY_MIGRATED, Long.toString(account));
+            loadKeys("", s);
+            rewrite("", account, s);
+        }
+        // else a new account: blank, and written on its first change like any other
+    }
+
+    /** Schema 0 -> record: stage the record and the removal of the per-field keys it replaces, in that order. */
+    private void rewrite(String keyPrefix, long account, StreakState s)
+    {
+        s.markAllDirty();
+        save(account, s);
+        synchronized (pending)
+        {
+            for (String k : KEYS)
+            {
+                if (store.get(keyPrefix + k) != null) pending.put(keyPrefix + k, null);
+            }
+        }
+    }
+
+    private boolean hasKeys(String keyPrefix)
+    {
+        for (String k : KEYS)
+        {
+            if (read(keyPrefix + k) != null) return true;
+        }
+        return false;
+    }
+
+    /** Staged-but-unflushed values win over the store (a profile can be evicted and reloaded in between). */
+    private String read(String key)
+    {
+        synchronized (pending)
+        {
+            if (pending.containsKey(key)) return pending.get(key);
+        }
+        return store.get(key);
+    }
+
+    /** Schema 0, including the per-task days that predate the progress mask. */
+    private void loadKeys(String p, StreakState s)
+    {
+        s.setCurrentStreak(getInt(p + "currentStreak", 0));
+        s.setBestStreak(getInt(p + "bestStreak", 0));
+        s.setLastSeenDay(getDay(p + "lastSeenDateUTC"));
+
+        // Older data has one date per task instead of a progress mask
+        final boolean legacyProgress = read(p + "progressDateUTC") == null;
+        final int birdDay = legacyProgress ? getDay(p + "lastBirdhouseDateUTC") : UtcClock.NO_DAY;
+        final int herbDay = legacyProgress ? getDay(p + "lastHerbDateUTC") : UtcClock.NO_DAY;
+        if (legacyProgress)
+        {
+            final int day = Math.max(birdDay, herbDay); // NO_DAY is Integer.MIN_VALUE
+            s.setProgress(day, (birdDay == day ? MiniTask.BIRDHOUSE.bit() : 0) | (herbDay == day ? MiniTask.HERB.bit() : 0));
+        }
+        else
+        {
+            s.setProgress(getDay(p + "progressDateUTC"), getInt(p + "progressMask", 0));
+        }
+
+        s.setLastCompletionDay(getDay(p + "lastCompletionDateUTC"));
+        s.setLastAnnouncementDay(getDay(p + "lastAnnouncementDateUTC"));
+
+        final String history = read(p + "history");
+        s.setHistory(CompletionHistory.decode(history));
+
+        if (history == null)
+        {
+            // Older data has no history: rebuild what the counters imply
+            backfillHistory(s, birdDay, herbDay);
+        }
+
+        // Best is monotonic; history may know a longer run than the stored counter
+        s.setBestStreak(s.getHistory().longestRun());
+    }
 
-    void save(StreakState s)
+    private static String prefix(long account)
     {
-        setInt("currentStreak", s.getCurrentStreak());
-        setInt("bestStreak", s.getBestStreak());
-        setStr("lastSeenDateUTC", s.getLastSeenDateUTC());
-        setStr("lastBirdhouseDateUTC", s.getLastBirdhouseDateUTC());
-        setStr("lastHerbDateUTC", s.getLastHerbDateUTC());
-        setStr("lastCompletionDateUTC", s.getLastCompletionDateUTC());
-        // NEW
-        setStr("lastAnnouncementDateUTC", s.getLastAnnouncementDateUTC());
+        return account + ".";
     }
 
-    void loadInto(StreakState s)
+    private static void backfillHistory(StreakState s, int birdDay, int herbDay)
     {
-        s.setCurrentStreak(getInt("currentStreak", 0));
-        s.setBestStreak(getInt("bestStreak", 0));
-        s.setLastSeenDateUTC(getStr("lastSeenDateUTC", ""));
-        s.setLastBirdhouseDateUTC(getStr("lastBirdhouseDateUTC", ""));
-        s.setLastHerbDateUTC(getStr("lastHerbDateUTC", ""));
-        s.setLastCompletionDateUTC(getStr("lastCompletionDateUTC", ""));
-        // NEW (back-compat default)
-        s.setLastAnnouncementDateUTC(getStr("lastAnnouncementDateUTC", ""));
+        final int lastCompletion = s.getLastCompletionDay();
+        if (lastCompletion != UtcClock.NO_DAY)
+        {
+            for (int d = lastCompletion - s.getCurrentStreak() + 1; d <= lastCompletion; d++)
+            {
+                for (MiniTask task : MiniTask.ALL) s.markDone(task, d);
+            }
+        }
+        if (birdDay != UtcClock.NO_DAY) s.markDone(MiniTask.BIRDHOUSE, birdDay);
+        if (herbDay != UtcClock.NO_DAY) s.markDone(MiniTask.HERB, herbDay);
     }
 
-    private void setInt(String key, int v) { configManager.setConfiguration(GROUP, key, v); }
     private int getInt(String key, int def)
     {
-        Integer v = configManager.getConfiguration(GROUP, key, Integer.class);
-        return v != null ? v : def;
+        final String v = read(key);
+        if (v == null) return def;
+        try
+        {
+            return Integer.parseInt(v.trim());
+        }
+        catch (NumberFormatException e)
+        {
+            return def;
+        }
     }
 
-    private void setStr(String key, String v) { configManager.setConfiguration(GROUP, key, v); }
-    private String getStr(String key, String def)
+    // Dates stay "YYYY-MM-DD" in storage; in memory they are epoch days
+    private int getDay(String key)
     {
-        String v = configManager.getConfiguration(GROUP, key);
-        return v != null ? v : def;
+        return UtcClock.parse(read(key));
     }
 }
@@ -0,0 +1,42 @@
+package com.birdwatcher52.ministreak;
+
+import java.util.Collection;
+
+/**
+ * The daily mini tasks, and the registry for them. Ordinals double as bit positions in progress
+ * masks, chat trigger results and the stored completion history, so new tasks go at the end.
+ * Adding one needs a constant here and a rule in {@link ChatTriggers}; nothing else is per-task.
+ */
+public enum MiniTask
+{
+    BIRDHOUSE("Birdhouse", "BIRD"),
+    HERB("Herb", "HERB");
+
+    static final MiniTask[] ALL = values();
+    static final int ALL_MASK = (1 << ALL.length) - 1;
+
+    private final String label;
+    private final String shortLabel;
+
+    MiniTask(String label, String shortLabel)
+    {
+        this.label = label;
+        this.shortLabel = shortLabel;
+    }
+
+    String getLabel() { return label; }
+    String getShortLabel() { return shortLabel; }
+
+    int bit() { return 1 << ordinal(); }
+
+    @Override
+    public String toString() { return label; } // config dropdown text
+
+    /** Bitmask of {@code tasks}; an empty/null selection means every task. */
+    static int mask(Collection<MiniTask> tasks)
+    {
+        int m = 0;
+        if (tasks != null) for (MiniTask t : tasks) m |= t.bit();
+        return m == 0 ? ALL_MASK : m;
+    }
+}
@@ -2,6 +2,7 @@ package com.birdwatcher52.ministreak;
 
 import lombok.Getter;
 import net.runelite.api.Client;
+import net.runelite.api.GameState;
 import net.runelite.api.IndexedSprite;
 import net.runelite.api.ScriptID;
 import net.runelite.client.callback.ClientThread;
@@ -12,97 +13,214 @@ import javax.inject.Inject;
 import javax.inject.Singleton;
 import java.awt.image.BufferedImage;
 import java.util.Arrays;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 /**
- * Appends our emblem as a new modicon and exposes its index.
- * Handles early-client race by retrying for a few ticks.
+ * Owns one modicon slot per session and swaps the emblem sprite into it in place.
+ * Every emblem is quantised to a 13x13 IndexedSprite once, so switching is a single array store.
+ * Installation is driven by readiness signals (game state, sprite arrival); when the client is not
+ * ready yet, one retry is scheduled with exponential backoff. Sprite loads are single-flight per
+ * emblem and at most MAX_IN_FLIGHT run at once.
  */
 @Singleton
 public final class ModiconInstaller
 {
-    private static final int MAX_RETRY_TICKS = 120;
+    private static final int MAX_IN_FLIGHT = 2;
+    private static final int MAX_RETRIES = 8;
+    private static final long BASE_RETRY_MS = 250;
+    private static final long MAX_RETRY_MS = 8_000;
+    private static final int SIZE = 13;
+    private static final StreakEmblems[] EMBLEMS = StreakEmblems.values();
 
     private final Client client;
     private final ClientThread clientThread;
     private final SpriteManager spriteManager;
+    private final ScheduledExecutorService executor;
 
     @Getter
     private int streakModIconIdx = -1;
 
+    // client-thread state; prepared sprites and the claimed slot outlive reset() so restarts reuse them
+    private final IndexedSprite[] prepared = new IndexedSprite[EMBLEMS.length];
+    private final boolean[] requested = new boolean[EMBLEMS.length];
+    private int inFlight = 0;
+    private int slot = -1;
+
     private StreakEmblems loaded;
-    private int retryTicks = 0;
     private boolean installed = false;
 
+    // at most one pending retry
+    private ScheduledFuture<?> retry;
+    private int retries = 0;
+
     @Inject
-    public ModiconInstaller(Client client, ClientThread clientThread, SpriteManager spriteManager)
+    public ModiconInstaller(Client client, ClientThread clientThread, SpriteManager spriteManager,
+                            ScheduledExecutorService executor)
     {
         this.client = client;
         this.clientThread = clientThread;
         this.spriteManager = spriteManager;
+        this.executor = executor;
     }
 
     public void reset()
     {
-        streakModIconIdx = -1;
-        loaded = null;
-        retryTicks = 0;
-        installed = false;
+        clientThread.invoke(() -> {
+            streakModIconIdx = -1;
+            loaded = null;
+            installed = false;
+            cancelRetry();
+        });
     }
 
-    public void tickRetry()
+    /** Login screen / logged in are when the mod icon array shows up or gets rebuilt. */
+    public void onGameStateChanged(GameState state)
     {
-        if (!installed && retryTicks++ < MAX_RETRY_TICKS && loaded != null)
-        {
-            ensureInstalled(loaded);
-        }
+        if (state != GameState.LOGIN_SCREEN && state != GameState.LOGGED_IN) return;
+
+        clientThread.invoke(() -> {
+            if (loaded == null || (installed && ownsSlot(client.getModIcons()))) return;
+            retries = 0; // fresh signal; restart the backoff
+            attempt();
+        });
     }
 
     public void ensureInstalled(StreakEmblems emblem)
     {
         if (emblem == null) return;
 
-        // Already installed and unchanged
-        if (installed && loaded == emblem && streakModIconIdx >= 0)
+        clientThread.invoke(() -> {
+            // Already installed and unchanged
+            if (installed && loaded == emblem && ownsSlot(client.getModIcons()))
+            {
+                return;
+            }
+
+            if (loaded != emblem) installed = false; // old sprite stays up until the new one is in
+            loaded = emblem;
+            retries = 0;
+            attempt();
+        });
+    }
+
+    private void attempt()
+    {
+        prepareAll();
+        apply();
+        if (!installed) scheduleRetry();
+    }
+
+    private void scheduleRetry()
+    {
+        if (retry != null && !retry.isDone()) return;
+        if (retries >= MAX_RETRIES) return; // wait for the next game state change
+
+        final long delay = Math.min(MAX_RETRY_MS, BASE_RETRY_MS << retries++);
+        retry = executor.schedule(() -> clientThread.invoke(() -> {
+            retry = null;
+            if (!installed && loaded != null) attempt();
+        }), delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void cancelRetry()
+    {
+        if (retry != null)
         {
-            return;
+            retry.cancel(false);
+            retry = null;
         }
+        retries = 0;
+    }
 
-        loaded = emblem;
+    /**
+     * Request and quantise every emblem once, the wanted one first. The sprite callback already runs
+     * on the client thread, so the resize is handed to the executor and only the quantise comes back.
+     * Each finished load pulls the next one in.
+     */
+    private void prepareAll()
+    {
+        if (loaded != null) request(loaded);
+        for (StreakEmblems e : EMBLEMS)
+        {
+            request(e);
+        }
+    }
 
-        spriteManager.getSpriteAsync(emblem.getSpriteId(), 0, sprite -> {
-            if (sprite == null) return;
+    private void request(StreakEmblems e)
+    {
+        final int i = e.ordinal();
+        if (prepared[i] != null || requested[i] || inFlight >= MAX_IN_FLIGHT) return;
+        requested[i] = true;
+        inFlight++;
+
+        spriteManager.getSpriteAsync(e.getSpriteId(), 0, sprite -> executor.execute(() -> {
+            final BufferedImage img = (sprite == null || (sprite.getWidth() == SIZE && sprite.getHeight() == SIZE))
+                    ? sprite
+                    : ImageUtil.resizeImage(sprite, SIZE, SIZE);
 
             clientThread.invoke(() -> {
+                requested[i] = false;
+                inFlight--;
                 try
                 {
-                    BufferedImage img = sprite;
-                    if (img.getWidth() != 13 || img.getHeight() != 13)
-                    {
-                        img = ImageUtil.resizeImage(img, 13, 13);
-                    }
-
-                    final IndexedSprite is = ImageUtil.getImageIndexedSprite(img, client);
-                    final IndexedSprite[] mods = client.getModIcons();
-                    if (mods == null)
-                    {
-                        // Not ready yet; on next tick we'll retry.
-                        installed = false;
-                        return;
-                    }
-
-                    final IndexedSprite[] newMods = Arrays.copyOf(mods, mods.length + 1);
-                    streakModIconIdx = mods.length;
-                    newMods[streakModIconIdx] = is;
-                    client.setModIcons(newMods);
-
-                    installed = true;
-                    retryTicks = 0;
-
-                    // Rebuild prompt so <img=…> is parsed everywhere
-                    client.runScript(ScriptID.CHAT_PROMPT_INIT);
+                    if (img != null) prepared[i] = ImageUtil.getImageIndexedSprite(img, client);
                 }
                 catch (Exception ignored) { /* keep UX resilient */ }
+
+                if (loaded == null) return;
+                if (loaded == e) attempt(); // null sprite (not in cache yet) -> backoff retry
+                else prepareAll();
             });
-        });
+        }));
+    }
+
+    /** Put the wanted emblem into our slot, claiming the slot the first time. Client thread only. */
+    private void apply()
+    {
+        if (loaded == null) return;
+
+        final IndexedSprite sprite = prepared[loaded.ordinal()];
+        if (sprite == null) return; // lands via prepareAll
+
+        IndexedSprite[] mods = client.getModIcons();
+        if (mods == null)
+        {
+            // Not ready yet; attempt() schedules a retry
+            installed = false;
+            return;
+        }
+
+        if (ownsSlot(mods))
+        {
+            mods[slot] = sprite; // swap in place; <img=slot> tags everywhere pick it up
+        }
+        else
+        {
+            mods = Arrays.copyOf(mods, mods.length + 1);
+            slot = mods.length - 1;
+            mods[slot] = sprite;
+            client.setModIcons(mods);
+        }
+
+        final boolean moved = streakModIconIdx != slot;
+        streakModIconIdx = slot;
+        installed = true;
+        cancelRetry();
+
+        // Rebuild prompt so <img=…> is parsed everywhere
+        if (moved) client.runScript(ScriptID.CHAT_PROMPT_INIT);
+    }
+
+    /** True if our claimed slot still holds one of our sprites (the client can replace the array). */
+    private boolean ownsSlot(IndexedSprite[] mods)
+    {
+        if (mods == null || slot < 0 || slot >= mods.length) return false;
+        for (IndexedSprite p : prepared)
+        {
+            if (p != null && mods[slot] == p) return true;
+        }
+        return false;
     }
 }
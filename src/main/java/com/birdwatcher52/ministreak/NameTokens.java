@@ -0,0 +1,349 @@
+package com.birdwatcher52.ministreak;
+
+import net.runelite.client.util.Text;
+
+/**
+ * Helpers for the name rewriting in {@link StreakNameDecorator}.
+ *
+ * The sent-line path is regex-free: tokens such as {@code <img=N>} and the gold streak
+ * prefix are built once and reused, and the scanners work on indices into the original
+ * string, so a decorated line costs one StringBuilder pass and the final String.
+ * Client thread only (shared builder).
+ */
+final class NameTokens
+{
+    static final String STREAK_COLOR = "ffdf00"; // gold
+
+    private static final String IMG_OPEN = "<img=";
+    private static final String STREAK_OPEN = "<col=" + STREAK_COLOR + ">";
+    private static final String COL_CLOSE = "</col>";
+    private static final int MAX_PREFIX_DIGITS = 4;
+
+    // <img=N> for small N, built on first use
+    private final String[] imgTags = new String[256];
+
+    // Interned decoration head, keyed by (streak, emblem idx, native idx, showNative)
+    private int headStreak = -1;
+    private int headOurIdx = -1;
+    private int headNativeIdx = -1;
+    private boolean headShowNative = false;
+    private String streakPrefix = "";
+    private String head = "";         // prefix + our
+    private String headWithNative = ""; // prefix + our + native (when shown)
+
+    private final StringBuilder sb = new StringBuilder(64);
+
+    String imgTag(int idx)
+    {
+        if (idx < 0 || idx >= imgTags.length) return IMG_OPEN + idx + ">";
+
+        String tag = imgTags[idx];
+        if (tag == null)
+        {
+            tag = IMG_OPEN + idx + ">";
+            imgTags[idx] = tag;
+        }
+        return tag;
+    }
+
+    /** "&lt;col=ffdf00&gt;N&lt;/col&gt; " or "" for streaks below 1. */
+    String streakPrefix(int streak)
+    {
+        head(streak, headOurIdx, headNativeIdx, headShowNative);
+        return streakPrefix;
+    }
+
+    /** prefix + our emblem tag. */
+    String head(int streak, int ourIdx)
+    {
+        head(streak, ourIdx, headNativeIdx, headShowNative);
+        return head;
+    }
+
+    private void head(int streak, int ourIdx, int nativeIdx, boolean showNative)
+    {
+        if (streak == headStreak && ourIdx == headOurIdx
+                && nativeIdx == headNativeIdx && showNative == headShowNative)
+        {
+            return;
+        }
+
+        if (streak != headStreak)
+        {
+            streakPrefix = (streak < 1) ? "" : STREAK_OPEN + streak + COL_CLOSE + " ";
+        }
+        head = streakPrefix + (ourIdx >= 0 ? imgTag(ourIdx) : "");
+        headWithNative = (showNative && nativeIdx >= 0) ? head + imgTag(nativeIdx) : head;
+
+        headStreak = streak;
+        headOurIdx = ourIdx;
+        headNativeIdx = nativeIdx;
+        headShowNative = showNative;
+    }
+
+    /**
+     * Rewrite a sender name as [streak prefix][our emblem][native?][remaining icons][name].
+     * Any stale streak prefix and a stray copy of our emblem are dropped; with showNative off
+     * one native tag is removed from the leading chain.
+     *
+     * @param start    index after a stale streak prefix (see {@link #skipStreakPrefix})
+     * @param chainEnd end of the leading img chain starting at {@code start}
+     */
+    String compose(String base, int start, int chainEnd, int streak, int ourIdx, int nativeIdx, boolean showNative)
+    {
+        head(streak, ourIdx, nativeIdx, showNative);
+        final String our = imgTag(ourIdx);
+        final String nativeTag = nativeIdx >= 0 ? imgTag(nativeIdx) : null;
+
+        // Ranges of the leading chain to drop (-1 = none)
+        int ourAt = -1;
+        int nativeAt = -1;
+        boolean leadingHasNative = false;
+
+        if (chainEnd > start)
+        {
+            ourAt = indexOf(base, our, start, chainEnd);
+
+            if (nativeTag != null)
+            {
+                // first native tag left once ours is gone
+                int n = indexOf(base, nativeTag, start, chainEnd);
+                if (n >= 0 && n == ourAt) n = indexOf(base, nativeTag, ourAt + our.length(), chainEnd);
+
+                if (!showNative)
+                {
+                    nativeAt = n;
+                }
+                else
+                {
+                    leadingHasNative = n >= 0;
+                }
+            }
+        }
+
+        sb.setLength(0);
+        sb.append(showNative && !leadingHasNative ? headWithNative : head);
+        appendSkipping(base, start, chainEnd, ourAt, our.length(), nativeAt, nativeTag == null ? 0 : nativeTag.length());
+        sb.append(base, chainEnd, base.length());
+        return sb.toString();
+    }
+
+    /**
+     * Rebuild the "name:" part of the chatbox input line as prefix + our + [native] + name,
+     * dropping whatever decoration the client script or an earlier pass left in front.
+     *
+     * @param colonIndex index of the first ':' in {@code text}
+     * @param plainName  local player name without tags
+     * @param nativeChain learned native icon chain ("" if none)
+     */
+    String decorateInput(String text, int colonIndex, String plainName,
+                         int streak, int ourIdx, String nativeChain, boolean showNative)
+    {
+        final String beforeColon = text.substring(0, colonIndex);
+        final String afterColon = text.substring(colonIndex);
+
+        final String prefix = streakPrefix(streak);
+        final String our = imgTag(ourIdx);
+        final String maybeNative = showNative ? nativeChain : "";
+
+        String remainder = beforeColon;
+        if (!prefix.isEmpty() && remainder.startsWith(prefix))
+        {
+            remainder = remainder.substring(prefix.length());
+        }
+        if (remainder.startsWith(our))
+        {
+            remainder = remainder.substring(our.length());
+        }
+        if (!maybeNative.isEmpty() && remainder.startsWith(maybeNative))
+        {
+            remainder = remainder.substring(maybeNative.length());
+        }
+        else if (!nativeChain.isEmpty() && remainder.startsWith(nativeChain))
+        {
+            // Script wrote the native chain even though we hide it – drop it before rebuilding.
+            remainder = remainder.substring(nativeChain.length());
+        }
+
+        remainder = remainder.substring(skipImgChain(remainder, 0));
+        String plainRemainder = Text.removeTags(remainder);
+
+        final String plainPrefix = Text.removeTags(prefix);
+        if (!plainPrefix.isEmpty() && plainRemainder.startsWith(plainPrefix))
+        {
+            plainRemainder = plainRemainder.substring(plainPrefix.length());
+        }
+
+        String nameSuffix = "";
+        if (plainRemainder.startsWith(plainName))
+        {
+            nameSuffix = plainRemainder.substring(plainName.length());
+        }
+
+        final String decoratedName = Text.escapeJagex(plainName) + nameSuffix;
+        return prefix + our + maybeNative + decoratedName + afterColon;
+    }
+
+    private void appendSkipping(String s, int from, int to, int skipA, int lenA, int skipB, int lenB)
+    {
+        int i = from;
+        while (i < to)
+        {
+            if (i == skipA) { i += lenA; continue; }
+            if (i == skipB) { i += lenB; continue; }
+
+            int next = to;
+            if (skipA > i && skipA < next) next = skipA;
+            if (skipB > i && skipB < next) next = skipB;
+            sb.append(s, i, next);
+            i = next;
+        }
+    }
+
+    // --- Scanners (equivalent to the old ^<col=ffdf00>\d{1,4}</col>\s* and ^(?:<img=\d+>)+ patterns) ---
+
+    /** @return index just past a leading gold streak prefix and its whitespace, or 0 if there is none. */
+    static int skipStreakPrefix(String s)
+    {
+        if (!s.startsWith(STREAK_OPEN)) return 0;
+
+        int i = STREAK_OPEN.length();
+        final int digitsStart = i;
+        while (i < s.length() && isDigit(s.charAt(i))) i++;
+
+        final int digits = i - digitsStart;
+        if (digits < 1 || digits > MAX_PREFIX_DIGITS || !s.startsWith(COL_CLOSE, i)) return 0;
+
+        i += COL_CLOSE.length();
+        while (i < s.length() && isRegexSpace(s.charAt(i))) i++;
+        return i;
+    }
+
+    /** @return end of the run of complete {@code <img=N>} tags starting at {@code from} (== from if none). */
+    static int skipImgChain(String s, int from)
+    {
+        int i = from;
+        while (true)
+        {
+            final int end = imgTagEnd(s, i);
+            if (end < 0) return i;
+            i = end;
+        }
+    }
+
+    /** @return N of the {@code <img=N>} tag at {@code at}, or -1 if there is none or N does not fit an int. */
+    static int parseImgIndex(String s, int at)
+    {
+        final int end = imgTagEnd(s, at);
+        if (end < 0) return -1;
+
+        long v = 0;
+        for (int i = at + IMG_OPEN.length(); i < end - 1; i++)
+        {
+            v = v * 10 + (s.charAt(i) - '0');
+            if (v > Integer.MAX_VALUE) return -1;
+        }
+        return (int) v;
+    }
+
+    /** @return s without the first occurrence of token (s itself if absent). */
+    static String removeFirst(String s, String token)
+    {
+        final int at = s.indexOf(token);
+        if (at < 0) return s;
+        return s.substring(0, at) + s.substring(at + token.length());
+    }
+
+    /**
+     * Same as {@code Text.standardize(raw).equalsIgnoreCase(standardized)}, without building the
+     * standardized copy: tags are skipped, NBSP counts as a space and outer whitespace is ignored.
+     */
+    static boolean isSameName(String raw, String standardized)
+    {
+        final int n = raw.length();
+        int i = 0;
+        int j = 0;
+        boolean leading = true;
+
+        while (i < n)
+        {
+            char c = raw.charAt(i);
+            if (c == '<')
+            {
+                final int close = raw.indexOf('>', i + 1);
+                if (close >= 0) { i = close + 1; continue; }
+            }
+            i++;
+
+            if (c == '\u00A0') c = ' ';
+            if (leading)
+            {
+                if (c <= ' ') continue; // trim()
+                leading = false;
+            }
+
+            if (j < standardized.length() && sameIgnoreCase(c, standardized.charAt(j)))
+            {
+                j++;
+                continue;
+            }
+
+            // Anything past the match may only be trailing whitespace (trim())
+            if (c > ' ' || j < standardized.length()) return false;
+            return onlyTrailingSpace(raw, i) && j == standardized.length();
+        }
+        return j == standardized.length();
+    }
+
+    private static boolean onlyTrailingSpace(String raw, int from)
+    {
+        for (int i = from; i < raw.length(); i++)
+        {
+            char c = raw.charAt(i);
+            if (c == '<')
+            {
+                final int close = raw.indexOf('>', i + 1);
+                if (close >= 0) { i = close; continue; }
+            }
+            if (c == '\u00A0') c = ' ';
+            if (c > ' ') return false;
+        }
+        return true;
+    }
+
+    private static boolean sameIgnoreCase(char a, char b)
+    {
+        if (a == b) return true;
+        final char ua = Character.toUpperCase(a);
+        final char ub = Character.toUpperCase(b);
+        return ua == ub || Character.toLowerCase(ua) == Character.toLowerCase(ub);
+    }
+
+    private static int imgTagEnd(String s, int at)
+    {
+        if (!s.startsWith(IMG_OPEN, at)) return -1;
+
+        int i = at + IMG_OPEN.length();
+        final int digitsStart = i;
+        while (i < s.length() && isDigit(s.charAt(i))) i++;
+        if (i == digitsStart || i >= s.length() || s.charAt(i) != '>') return -1;
+        return i + 1;
+    }
+
+    private static int indexOf(String s, String token, int from, int to)
+    {
+        final int at = s.indexOf(token, from);
+        return (at >= 0 && at + token.length() <= to) ? at : -1;
+    }
+
+    private static boolean isDigit(char c)
+    {
+        return c >= '0' && c <= '9';
+    }
+
+    // java.util.regex \s: [ \t\n\x0B\f\r]
+    private static boolean isRegexSpace(char c)
+    {
+        return c == ' ' || c == '\t' || c == '\n' || c == 0x0B || c == '\f' || c == '\r';
+    }
+}
@@ -0,0 +1,120 @@
+package com.birdwatcher52.ministreak;
+
+import com.birdwatcher52.ministreak.util.LatencyHistogram;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Per-handler latency histograms and invocation counts, shown in the panel in debug mode.
+ *
+ * Usage: {@code long t = metrics.start(); ...; metrics.stop(Probe.X, t);}
+ * While disabled, start() returns 0 and stop() does nothing, so the cost is one volatile read.
+ */
+@Singleton
+final class PluginMetrics
+{
+    enum Probe
+    {
+        GAME_TICK("onGameTick"),
+        CHAT_MESSAGE("onChatMessage"),
+        BEFORE_RENDER("onBeforeRender"),
+        SCRIPT_CALLBACK("onScriptCallback"),
+        TOAST_QUEUE("toast.processQueue"),
+        STORAGE_SAVE("storage.save"),
+        COMMAND_BATCH("command batch"),
+        /** play() to audible, recorded by the TinyWav mixer thread regardless of the enabled flag. */
+        SOUND_START("sound start"),
+        /** One-off timings below are recorded with record(), also regardless of the flag. */
+        START_UP("startUp"),
+        SOUND_LOAD("sound load");
+
+        private final String label;
+
+        Probe(String label) { this.label = label; }
+
+        String getLabel() { return label; }
+    }
+
+    /** Plain event counts shown under the timings; like probes, only counted while enabled. */
+    enum Counter
+    {
+        /** Against the two below: input rewrites should follow real changes, not frames. */
+        FRAMES("frames"),
+        INPUT_REFRESH_ASKED("input refresh asks"),
+        INPUT_REFRESH_RUN("input rewrites"),
+        /** markDirty() calls vs. client.refreshChat() calls actually made. */
+        CHAT_REFRESH_ASKED("chat refresh asks"),
+        CHAT_REFRESH_RUN("chat refreshes");
+
+        private final String label;
+
+        Counter(String label) { this.label = label; }
+
+        String getLabel() { return label; }
+    }
+
+    private static final Probe[] PROBES = Probe.values();
+
+    private final LatencyHistogram[] histograms = new LatencyHistogram[PROBES.length];
+    private final AtomicLongArray counts = new AtomicLongArray(Counter.values().length);
+    private volatile boolean enabled = false;
+
+    @Inject
+    PluginMetrics()
+    {
+        for (int i = 0; i < histograms.length; i++) histograms[i] = new LatencyHistogram();
+    }
+
+    void setEnabled(boolean enabled)
+    {
+        this.enabled = enabled;
+    }
+
+    boolean isEnabled()
+    {
+        return enabled;
+    }
+
+    /** @return a start timestamp, or 0 when metrics are off */
+    long start()
+    {
+        return enabled ? System.nanoTime() : 0L;
+    }
+
+    void stop(Probe probe, long start)
+    {
+        if (start != 0L)
+        {
+            histograms[probe.ordinal()].record(System.nanoTime() - start);
+        }
+    }
+
+    /** Record a duration measured elsewhere, even while disabled (for rare one-off events). */
+    void record(Probe probe, long nanos)
+    {
+        histograms[probe.ordinal()].record(nanos);
+    }
+
+    LatencyHistogram get(Probe probe)
+    {
+        return histograms[probe.ordinal()];
+    }
+
+    void count(Counter counter)
+    {
+        if (enabled) counts.incrementAndGet(counter.ordinal());
+    }
+
+    long get(Counter counter)
+    {
+        return counts.get(counter.ordinal());
+    }
+
+    void reset()
+    {
+        for (LatencyHistogram h : histograms) h.reset();
+        for (int i = 0; i < counts.length(); i++) counts.set(i, 0);
+    }
+}
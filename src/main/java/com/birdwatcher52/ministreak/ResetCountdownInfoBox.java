@@ -0,0 +1,64 @@
+package com.birdwatcher52.ministreak;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+
+import net.runelite.client.plugins.Plugin;
+import net.runelite.client.ui.overlay.infobox.InfoBox;
+
+/**
+ * Time to the next daily reset, green once today counts. Text and tooltip are rebuilt only when
+ * the minute or the snapshot moves; the infobox layer asks for them every frame.
+ */
+final class ResetCountdownInfoBox extends InfoBox
+{
+    private static final Color DONE = new Color(0x3fbf3f);
+
+    private final StreakSnapshots snapshots;
+    private final UtcClock clock;
+
+    private long cachedVersion = -1;
+    private long cachedMinutes = -1;
+    private String text = "";
+    private String tooltip = "";
+
+    ResetCountdownInfoBox(BufferedImage image, Plugin plugin, StreakSnapshots snapshots, UtcClock clock)
+    {
+        super(image, plugin);
+        this.snapshots = snapshots;
+        this.clock = clock;
+    }
+
+    @Override
+    public String getText()
+    {
+        update(snapshots.latest());
+        return text;
+    }
+
+    @Override
+    public Color getTextColor()
+    {
+        return snapshots.latest().isComplete() ? DONE : Color.WHITE;
+    }
+
+    @Override
+    public String getTooltip()
+    {
+        update(snapshots.latest());
+        return tooltip;
+    }
+
+    private void update(StreakSnapshot s)
+    {
+        final long minutes = StreakOverlay.minutesToReset(clock);
+        if (s.version == cachedVersion && minutes == cachedMinutes) return;
+
+        cachedVersion = s.version;
+        cachedMinutes = minutes;
+        // infobox text has room for ~4 characters
+        text = (minutes >= 60) ? (minutes / 60) + "h" : minutes + "m";
+        tooltip = "MiniStreak: " + s.currentStreak + (s.isComplete() ? " (today done)" : "")
+                + "</br>Next reset in " + StreakCard.formatCountdown(minutes);
+    }
+}
@@ -1,37 +1,28 @@
 package com.birdwatcher52.ministreak;
 
-import java.time.LocalDate;
-import java.time.ZoneOffset;
+import static com.birdwatcher52.ministreak.UtcClock.NO_DAY;
 
 /** Hardcore: no shields. If yesterday wasn't fully completed, reset the streak. */
 final class ResetService
 {
-    void handleDailyRoll(StreakState s)
+    void handleDailyRoll(StreakState s, int today)
     {
-        LocalDate today = LocalDate.now(ZoneOffset.UTC);
-        String todayStr = today.toString();
-
-        String lastSeen = s.getLastSeenDateUTC();
-        if (lastSeen == null || lastSeen.isEmpty())
+        final int lastSeen = s.getLastSeenDay();
+        if (lastSeen == NO_DAY)
         {
-            s.setLastSeenDateUTC(todayStr);
+            s.setLastSeenDay(today);
             return;
         }
 
-        if (todayStr.equals(lastSeen))
+        if (today == lastSeen)
         {
             return; // same UTC day
         }
 
-        // new UTC day → check if yesterday had both minis
-        LocalDate yesterday = today.minusDays(1);
-        boolean yesterdayComplete = s.bothDoneOn(yesterday.toString());
-
-        if (!yesterdayComplete)
-        {
-            s.resetCurrentStreak();
-        }
+        // new UTC day → the streak survives only if yesterday had every required mini;
+        // take its length from the history rather than trusting the counter
+        s.setCurrentStreak(s.getHistory().currentStreak(today));
 
-        s.setLastSeenDateUTC(todayStr);
+        s.setLastSeenDay(today);
     }
 }
@@ -0,0 +1,125 @@
+package com.birdwatcher52.ministreak;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
+
+import net.runelite.client.callback.ClientThread;
+
+/**
+ * Fires the day roll at the reset instant instead of checking the date every tick.
+ *
+ * One timer is armed for {@link UtcClock#nextResetMillis()}; when it fires the day is re-read on
+ * the client thread, the roll callback runs and the next timer is armed. Executor delays run on
+ * the monotonic clock, which can stop during sleep/hibernate or disagree with a wall clock that
+ * was changed, so a once-a-minute watchdog compares the two and catches up if the day moved.
+ * The roll callback must be idempotent per day; it may be called again for the same day
+ * (login catch-up, early timer), and that is how "exactly once" holds across missed timers.
+ */
+@Singleton
+final class RolloverScheduler
+{
+    private static final long SLACK_MS = 50;
+    private static final long WATCHDOG_MS = 60_000;
+    private static final long MAX_DRIFT_MS = 2_000;
+
+    private final UtcClock clock;
+    private final ScheduledExecutorService executor;
+    private final ClientThread clientThread;
+
+    // guarded by this
+    private IntConsumer onRoll;
+    private ScheduledFuture<?> timer;
+    private ScheduledFuture<?> watchdog;
+    private long anchorWallMs;
+    private long anchorNanos;
+
+    @Inject
+    RolloverScheduler(UtcClock clock, ScheduledExecutorService executor, ClientThread clientThread)
+    {
+        this.clock = clock;
+        this.executor = executor;
+        this.clientThread = clientThread;
+    }
+
+    /** Start firing {@code onRoll} (on the client thread, with the new day) at each reset. */
+    synchronized void start(IntConsumer onRoll)
+    {
+        this.onRoll = onRoll;
+        clock.tick();
+        arm();
+        if (watchdog == null)
+        {
+            watchdog = executor.scheduleWithFixedDelay(this::watch, WATCHDOG_MS, WATCHDOG_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    synchronized void stop()
+    {
+        onRoll = null;
+        if (timer != null) timer.cancel(false);
+        if (watchdog != null) watchdog.cancel(false);
+        timer = null;
+        watchdog = null;
+    }
+
+    /** Re-read the day now and run the roll callback; for login, offset changes and clock jumps. */
+    void catchUp()
+    {
+        clientThread.invoke(this::fire);
+    }
+
+    // client thread
+    private void fire()
+    {
+        final IntConsumer cb;
+        final int today;
+        synchronized (this)
+        {
+            cb = onRoll;
+            if (cb == null) return;
+            // tick before arming: nextResetMillis() is based on the cached day
+            today = clock.tick();
+            arm(); // a timer that fired a hair early just re-arms for the remaining millis
+        }
+        cb.accept(today);
+    }
+
+    // caller holds this
+    private void arm()
+    {
+        if (timer != null) timer.cancel(false);
+
+        final long delay = Math.max(0, clock.nextResetMillis() - clock.millis()) + SLACK_MS;
+        timer = executor.schedule(() -> clientThread.invoke(this::fire), delay, TimeUnit.MILLISECONDS);
+
+        anchorWallMs = clock.millis();
+        anchorNanos = System.nanoTime();
+    }
+
+    private void watch()
+    {
+        final boolean jumped;
+        synchronized (this)
+        {
+            if (onRoll == null) return;
+            final long wall = clock.millis() - anchorWallMs;
+            final long mono = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - anchorNanos);
+            jumped = Math.abs(wall - mono) > MAX_DRIFT_MS;
+            if (!jumped)
+            {
+                // keep the drift window per-interval
+                anchorWallMs = clock.millis();
+                anchorNanos = System.nanoTime();
+            }
+        }
+
+        if (jumped || clock.peek() != clock.today())
+        {
+            catchUp();
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.birdwatcher52.ministreak;
+
+import java.util.Arrays;
+import java.util.Base64;
+
+import static com.birdwatcher52.ministreak.UtcClock.NO_DAY;
+
+/**
+ * One {@link StreakState} as a single versioned record, Base64 so it fits a string store.
+ *
+ * Layout: varint schema version, then the fields in declaration order. Counts and masks are
+ * unsigned varints; days are zig-zag varints shifted by one so NO_DAY is a single 0 byte;
+ * history words are raw 64-bit. A typical profile is ~30 bytes before the history.
+ *
+ * Schema changes bump VERSION and only ever append: decode() reads what the record's version
+ * has and leaves defaults for the rest. Schema 0 is the per-field key layout, migrated by
+ * {@link MiniStreakStorage}.
+ */
+final class StateCodec
+{
+    static final int VERSION = 3;
+
+    private StateCodec()
+    {
+    }
+
+    static String encode(StreakState s)
+    {
+        final Writer out = new Writer();
+        out.uvarint(VERSION);
+        out.uvarint(s.getCurrentStreak());
+        out.uvarint(s.getBestStreak());
+        out.day(s.getLastSeenDay());
+        out.day(s.getProgressDay());
+        out.uvarint(s.getProgressMask());
+        out.day(s.getLastCompletionDay());
+        out.day(s.getLastAnnouncementDay());
+        s.getHistory().writeTo(out);
+        s.getHistory().writeRulesTo(out);   // version 2
+        out.uvarint(s.getRequiredMask());   // version 2
+        out.day(s.getOffsetMinutes());      // version 3; NO_OFFSET is NO_DAY
+        return Base64.getEncoder().withoutPadding().encodeToString(out.toByteArray());
+    }
+
+    /**
+     * Fill {@code s} from {@code blob}; leaves dirty bits set like any other change.
+     * @return false (and {@code s} untouched) if the record is malformed or from a newer schema
+     */
+    static boolean decode(String blob, StreakState s)
+    {
+        try
+        {
+            final Reader in = new Reader(Base64.getDecoder().decode(blob));
+            final int version = (int) in.uvarint();
+            if (version < 1 || version > VERSION) return false;
+
+            final int current = (int) in.uvarint();
+            final int best = (int) in.uvarint();
+            final int lastSeen = in.day();
+            final int progressDay = in.day();
+            final int progressMask = (int) in.uvarint();
+            final int lastCompletion = in.day();
+            final int lastAnnouncement = in.day();
+            final CompletionHistory history = CompletionHistory.readFrom(in);
+            int required = 0; // version 1 never recorded the set: the next one set is taken as-is
+            if (version >= 2)
+            {
+                history.readRulesFrom(in);
+                required = (int) in.uvarint();
+            }
+            // older versions never recorded the offset: the days are taken as the current numbering
+            final int offset = (version >= 3) ? in.day() : StreakState.NO_OFFSET;
+            // version 4+ fields go here, each behind "if (version >= N)"
+
+            s.setCurrentStreak(current);
+            s.setBestStreak(best);
+            s.setLastSeenDay(lastSeen);
+            s.setProgress(progressDay, progressMask);
+            s.setLastCompletionDay(lastCompletion);
+            s.setLastAnnouncementDay(lastAnnouncement);
+            s.setHistory(history);
+            if (required != 0) s.setRequiredMask(required);
+            s.setOffsetMinutes(offset);
+            return true;
+        }
+        catch (IllegalArgumentException e) // bad Base64 or a truncated record
+        {
+            return false;
+        }
+    }
+
+    static final class Writer
+    {
+        private byte[] buf = new byte[64];
+        private int len;
+
+        void uvarint(long v)
+        {
+            ensure(10);
+            while ((v & ~0x7FL) != 0)
+            {
+                buf[len++] = (byte) ((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            buf[len++] = (byte) v;
+        }
+
+        void day(int day)
+        {
+            uvarint(day == NO_DAY ? 0 : ((((long) day << 1) ^ (day >> 31)) + 1));
+        }
+
+        void fixed64(long v)
+        {
+            ensure(8);
+            for (int i = 56; i >= 0; i -= 8) buf[len++] = (byte) (v >>> i);
+        }
+
+        byte[] toByteArray()
+        {
+            return Arrays.copyOf(buf, len);
+        }
+
+        private void ensure(int n)
+        {
+            if (len + n > buf.length) buf = Arrays.copyOf(buf, Math.max(buf.length * 2, len + n));
+        }
+    }
+
+    static final class Reader
+    {
+        private final byte[] buf;
+        private int pos;
+
+        Reader(byte[] buf)
+        {
+            this.buf = buf;
+        }
+
+        long uvarint()
+        {
+            long v = 0;
+            for (int shift = 0; shift < 64; shift += 7)
+            {
+                final byte b = next();
+                v |= (long) (b & 0x7F) << shift;
+                if (b >= 0) return v;
+            }
+            throw new IllegalArgumentException("varint too long");
+        }
+
+        int day()
+        {
+            final long z = uvarint();
+            if (z == 0) return NO_DAY;
+            final long u = z - 1;
+            return (int) ((u >>> 1) ^ -(u & 1));
+        }
+
+        long fixed64()
+        {
+            long v = 0;
+            for (int i = 0; i < 8; i++) v = (v << 8) | (next() & 0xFF);
+            return v;
+        }
+
+        private byte next()
+        {
+            if (pos >= buf.length) throw new IllegalArgumentException("truncated record");
+            return buf[pos++];
+        }
+    }
+}
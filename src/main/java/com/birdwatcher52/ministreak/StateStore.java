@@ -0,0 +1,32 @@
+package com.birdwatcher52.ministreak;
+
+import com.google.inject.ImplementedBy;
+
+/**
+ * Flat key/value backing for plugin runtime state (streak counters, dates).
+ * Kept apart from {@link MiniStreakConfig} so bookkeeping writes never look like user config edits.
+ */
+@ImplementedBy(JournalStateStore.class)
+interface StateStore
+{
+    /**
+     * @return false while stored values can't be read; get() then returns null for everything and
+     * writes are dropped, so callers must not take a missing key to mean "never written"
+     */
+    default boolean isAvailable()
+    {
+        return true;
+    }
+
+    /** @return the stored value, or null if the key was never written */
+    String get(String key);
+
+    void set(String key, String value);
+
+    void unset(String key);
+
+    /** Make everything written so far durable; called once per storage flush. */
+    default void commit()
+    {
+    }
+}
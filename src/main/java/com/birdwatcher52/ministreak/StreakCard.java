@@ -0,0 +1,134 @@
+package com.birdwatcher52.ministreak;
+
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+
+/**
+ * The in-game streak card: streak, today's minis and the reset countdown.
+ *
+ * {@link #image} keeps one pre-rendered BufferedImage and only lays it out again when the snapshot
+ * version or the displayed minute moves, so a frame is a single drawImage. {@link #paint} is the
+ * plain per-frame layout, used to fill the cache (and as the benchmark baseline).
+ * Not thread-safe; owned by whichever thread renders overlays.
+ */
+final class StreakCard
+{
+    static final Color BACKGROUND = new Color(70, 61, 50, 156); // RuneLite's standard panel backdrop
+    private static final Color DONE = new Color(0x3fbf3f);
+    private static final Color TODO = new Color(0xff9040);
+    private static final Color OPTIONAL = Color.GRAY;
+
+    private static final int PAD = 4;
+    private static final int GAP = 8;
+
+    private final Font font;
+    private final BufferedImage scratch = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB); // for metrics
+
+    // cache; rebuilt when either key moves
+    private BufferedImage image;
+    private final Dimension size = new Dimension();
+    private long cachedVersion = -1;
+    private long cachedMinutes = -1;
+
+    StreakCard(Font font)
+    {
+        this.font = font;
+    }
+
+    /** The card for {@code s} with {@code minutesToReset} left; the same image until either changes. */
+    BufferedImage image(StreakSnapshot s, long minutesToReset)
+    {
+        if (image != null && s.version == cachedVersion && minutesToReset == cachedMinutes) return image;
+
+        final Graphics2D probe = scratch.createGraphics();
+        probe.setFont(font);
+        final Dimension d = measure(probe.getFontMetrics(), s, minutesToReset);
+        probe.dispose();
+
+        // reuse the old buffer unless it has to grow; the card only changes width by a glyph or two
+        if (image == null || image.getWidth() < d.width || image.getHeight() < d.height)
+        {
+            image = new BufferedImage(d.width, d.height, BufferedImage.TYPE_INT_ARGB);
+        }
+
+        final Graphics2D g = image.createGraphics();
+        g.setComposite(AlphaComposite.Clear);
+        g.fillRect(0, 0, image.getWidth(), image.getHeight());
+        g.setComposite(AlphaComposite.SrcOver);
+        paint(g, s, minutesToReset);
+        g.dispose();
+
+        size.setSize(d);
+        cachedVersion = s.version;
+        cachedMinutes = minutesToReset;
+        return image;
+    }
+
+    /** Size of the last image(); the buffer itself may be larger. */
+    Dimension size()
+    {
+        return size;
+    }
+
+    /** Lay out and draw the card straight into {@code g}, measuring every line. */
+    Dimension paint(Graphics2D g, StreakSnapshot s, long minutesToReset)
+    {
+        g.setFont(font);
+        final FontMetrics fm = g.getFontMetrics();
+        final Dimension d = measure(fm, s, minutesToReset);
+
+        g.setColor(BACKGROUND);
+        g.fillRect(0, 0, d.width, d.height);
+
+        final int lineHeight = fm.getHeight();
+        int y = PAD + fm.getAscent();
+        y = row(g, fm, d.width, y, "Streak", streakText(s), Color.WHITE);
+        for (MiniTask t : MiniTask.ALL)
+        {
+            y += lineHeight;
+            final boolean done = s.isDone(t);
+            row(g, fm, d.width, y, t.getLabel(), done ? "Done" : (s.isRequired(t) ? "To do" : "Optional"),
+                    done ? DONE : (s.isRequired(t) ? TODO : OPTIONAL));
+        }
+        y += lineHeight;
+        row(g, fm, d.width, y, "Reset in", formatCountdown(minutesToReset), Color.WHITE);
+        return d;
+    }
+
+    private static int row(Graphics2D g, FontMetrics fm, int width, int y, String left, String right, Color rightColor)
+    {
+        g.setColor(Color.WHITE);
+        g.drawString(left, PAD, y);
+        g.setColor(rightColor);
+        g.drawString(right, width - PAD - fm.stringWidth(right), y);
+        return y;
+    }
+
+    private static Dimension measure(FontMetrics fm, StreakSnapshot s, long minutesToReset)
+    {
+        int w = fm.stringWidth("Streak") + GAP + fm.stringWidth(streakText(s));
+        for (MiniTask t : MiniTask.ALL)
+        {
+            w = Math.max(w, fm.stringWidth(t.getLabel()) + GAP + fm.stringWidth("Optional"));
+        }
+        w = Math.max(w, fm.stringWidth("Reset in") + GAP + fm.stringWidth(formatCountdown(minutesToReset)));
+
+        final int rows = 2 + MiniTask.ALL.length;
+        return new Dimension(w + 2 * PAD, rows * fm.getHeight() + 2 * PAD);
+    }
+
+    private static String streakText(StreakSnapshot s)
+    {
+        return s.currentStreak + " (best " + s.bestStreak + ")";
+    }
+
+    static String formatCountdown(long minutes)
+    {
+        return String.format("%dh %02dm", minutes / 60, minutes % 60);
+    }
+}
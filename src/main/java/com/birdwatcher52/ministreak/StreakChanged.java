@@ -0,0 +1,20 @@
+package com.birdwatcher52.ministreak;
+
+/**
+ * Posted on the EventBus when the displayed streak or the chosen emblem actually changes.
+ * Consumers (name decorator, panel, ...) should react to this instead of polling every tick.
+ */
+public final class StreakChanged
+{
+    private final int streak;
+    private final StreakEmblems emblem;
+
+    StreakChanged(int streak, StreakEmblems emblem)
+    {
+        this.streak = streak;
+        this.emblem = emblem;
+    }
+
+    public int getStreak() { return streak; }
+    public StreakEmblems getEmblem() { return emblem; }
+}
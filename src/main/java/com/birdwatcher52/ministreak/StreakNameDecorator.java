@@ -17,10 +17,7 @@ import net.runelite.client.util.Text;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 import java.util.EnumSet;
-import java.util.Locale;
 import java.util.Set;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * Injects: [gold streak #] + our emblem + (optional native chain) into:
@@ -30,6 +27,10 @@ import java.util.regex.Pattern;
  * Fix included: players with NO native crown now "learn" an empty native chain
  * immediately, so the input line shows our emblem/number as soon as the emblem
  * is installed (no need to type first).
+ *
+ * The input line is only re-decorated on real changes (setChatboxInput, streak/emblem
+ * changes, activation). A fingerprint of the last applied result lets repeat requests
+ * bail out before any tag stripping or string building.
  */
 @Singleton
 @Slf4j
@@ -40,6 +41,13 @@ public final class StreakNameDecorator
 
     private boolean chatboxRefreshQueued = false;
 
+    // Fingerprint of the input line as we last left it (-1 length = nothing applied yet)
+    private int     appliedTextLength = -1;
+    private int     appliedTextHash   = 0;
+    private int     appliedStreak     = -1;
+    private int     appliedIconIdx    = -1;
+    private boolean appliedShowNative = false;
+
     private Widget getChatboxInput()
     {
         Widget widget = client.getWidget(InterfaceID.CHATBOX, CHATBOX_INPUT_COMPONENT_ID);
@@ -57,32 +65,35 @@ public final class StreakNameDecorator
             ChatMessageType.CLAN_GUEST_CHAT
     );
 
-    private static final Pattern LEADING_IMGS = Pattern.compile("^(?:<img=\\d+>)+");
-    private static final Pattern FIRST_IMG    = Pattern.compile("^<img=(\\d+)>");
-    private static final String  STREAK_COLOR = "ffdf00"; // gold
-    private static final Pattern STREAK_PREFIX_PATTERN =
-            Pattern.compile("^<col=" + STREAK_COLOR + ">\\d{1,4}</col>\\s*");
 
     private final Client client;
     private final ClientThread clientThread;
     private final MiniStreakConfig config;
     private final ModiconInstaller modicons;
+    private final ChatRefreshCoalescer chatRefresh;
+    private final PluginMetrics metrics;
+    private final NameTokens tokens = new NameTokens();
 
     // session state
     private boolean nativeLearned = false;  // we know what native chain (if any) to keep
     private String  nativeChain   = "";     // exact chain to preserve (can be "")
     private int     nativeIconIdx = -1;     // first native icon index, for convenience
-    private int     currentStreak = 0;      // provided by plugin each tick
+    private int     currentStreak = 0;      // provided via StreakChanged
     private boolean active        = false;  // emblem installed + learned native
+    private String  localNameRaw  = null;   // our RSN as last seen, and its standardized form
+    private String  localNameStd  = "";
 
     @Inject
     public StreakNameDecorator(Client client, ClientThread clientThread,
-                               MiniStreakConfig config, ModiconInstaller modicons)
+                               MiniStreakConfig config, ModiconInstaller modicons,
+                               ChatRefreshCoalescer chatRefresh, PluginMetrics metrics)
     {
         this.client = client;
         this.clientThread = clientThread;
         this.config = config;
         this.modicons = modicons;
+        this.chatRefresh = chatRefresh;
+        this.metrics = metrics;
     }
 
     public void reset()
@@ -93,12 +104,22 @@ public final class StreakNameDecorator
         currentStreak = 0;
         active        = false;
         chatboxRefreshQueued = false;
+        appliedTextLength = -1;
     }
 
     public void setCurrentStreak(int v)
     {
-        currentStreak = Math.max(0, v);
+        final int next = Math.max(0, v);
+        if (next == currentStreak) return; // nothing visible changes
+
+        currentStreak = next;
         // if user hits streak >=1 after learning+install, refresh input
+        refreshInput();
+    }
+
+    /** Rebuild the chat prompt and re-decorate the input line (no-op until active). */
+    public void refreshInput()
+    {
         if (active)
         {
             clientThread.invoke(() -> client.runScript(net.runelite.api.ScriptID.CHAT_PROMPT_INIT));
@@ -108,9 +129,28 @@ public final class StreakNameDecorator
 
     // --- Event wiring ---
 
+    @Subscribe
+    public void onStreakChanged(StreakChanged ev)
+    {
+        if (ev.getStreak() != currentStreak)
+        {
+            setCurrentStreak(ev.getStreak());
+        }
+        else
+        {
+            // Emblem switched: the number is the same but the icon in the prompt is not
+            refreshInput();
+        }
+    }
+
     @Subscribe
     public void onBeforeRender(BeforeRender ev)
     {
+        metrics.count(PluginMetrics.Counter.FRAMES);
+        if (nativeLearned) return; // input decoration is event-driven from here on
+
+        final long t = metrics.start();
+
         // If emblem is installed but we haven't "learned" yet, assume empty native chain
         // for main accounts (no crowns). This enables input decoration immediately.
         if (!nativeLearned && modicons.getStreakModIconIdx() >= 0)
@@ -126,17 +166,18 @@ public final class StreakNameDecorator
             tryLearnNativeFromInput();
         }
 
-        // keep input pretty while typing
-        requestChatboxRefresh();
+        metrics.stop(PluginMetrics.Probe.BEFORE_RENDER, t);
     }
 
     @Subscribe
     public void onScriptCallbackEvent(ScriptCallbackEvent ev)
     {
+        final long t = metrics.start();
         if ("setChatboxInput".equals(ev.getEventName()))
         {
             requestChatboxRefresh();
         }
+        metrics.stop(PluginMetrics.Probe.SCRIPT_CALLBACK, t);
     }
 
     @Subscribe
@@ -149,77 +190,51 @@ public final class StreakNameDecorator
 
         if (currentStreak < 1) return; // your rule
 
-        final String me = Text.standardize(client.getLocalPlayer().getName());
-        final String sender = Text.standardize(e.getName());
-        if (!me.equalsIgnoreCase(sender)) return;
+        if (!isLocalPlayer(e.getName())) return;
 
         final String base = (e.getMessageNode().getName() != null)
                 ? e.getMessageNode().getName()
                 : e.getName();
 
-        final String our = "<img=" + modicons.getStreakModIconIdx() + ">";
-        final String prefix = streakPrefix(currentStreak);
-        final boolean showNative = config.showNativeIcon();
+        final int ourIdx = modicons.getStreakModIconIdx();
 
         // Already in desired form?
-        if (base.startsWith(prefix + our)) return;
-
-        // Strip any previously-injected streak prefix
-        String cleanBase = base;
-        final Matcher prefM = STREAK_PREFIX_PATTERN.matcher(cleanBase);
-        if (prefM.find()) cleanBase = prefM.replaceFirst("");
-
-        // Split leading chain
-        String leading = "";
-        String rest = cleanBase;
-        final Matcher chain = LEADING_IMGS.matcher(cleanBase);
-        if (chain.find())
-        {
-            leading = chain.group(0);
-            rest    = cleanBase.substring(chain.end());
-
-            // Learn native idx (legacy convenience)
-            if (nativeIconIdx < 0)
-            {
-                final Matcher first = FIRST_IMG.matcher(leading);
-                if (first.find())
-                {
-                    try
-                    {
-                        final int idx = Integer.parseInt(first.group(1));
-                        if (idx != modicons.getStreakModIconIdx())
-                        {
-                            nativeIconIdx = idx;
-                        }
-                    }
-                    catch (NumberFormatException ignored) {}
-                }
-            }
+        if (base.startsWith(tokens.head(currentStreak, ourIdx))) return;
 
-            // Strip our emblem if it snuck into leading
-            leading = leading.replaceFirst("<img=" + modicons.getStreakModIconIdx() + ">", "");
+        // Skip any previously-injected streak prefix, then find the leading icon chain
+        final int start = NameTokens.skipStreakPrefix(base);
+        final int chainEnd = NameTokens.skipImgChain(base, start);
 
-            // Respect toggle: optionally remove one native tag from leading
-            if (!showNative && nativeIconIdx >= 0)
+        // Learn native idx (legacy convenience)
+        if (chainEnd > start && nativeIconIdx < 0)
+        {
+            final int idx = NameTokens.parseImgIndex(base, start);
+            if (idx >= 0 && idx != ourIdx)
             {
-                leading = leading.replaceFirst("<img=" + nativeIconIdx + ">", "");
+                nativeIconIdx = idx;
             }
         }
 
-        // Compose
-        final boolean leadingHasNative = nativeIconIdx >= 0 && leading.contains("<img=" + nativeIconIdx + ">");
-        final String nativeTag = (nativeIconIdx >= 0 && showNative) ? "<img=" + nativeIconIdx + ">" : "";
-
-        final String newName = prefix
-                + our
-                + ((showNative && !leadingHasNative) ? nativeTag : "")
-                + leading
-                + rest;
+        final String newName = tokens.compose(base, start, chainEnd,
+                currentStreak, ourIdx, nativeIconIdx, config.showNativeIcon());
 
         e.getMessageNode().setName(newName);
-// Nudge the chatbox to redraw on older/newer RL versions:
-        client.refreshChat();
+        // Nudge the chatbox to redraw; bursts of our own lines share one refresh
+        chatRefresh.markDirty();
+    }
+
+    /** Text.standardize(sender) equalsIgnoreCase Text.standardize(me), without re-standardizing our own name. */
+    private boolean isLocalPlayer(String sender)
+    {
+        final String rawName = client.getLocalPlayer().getName();
+        if (rawName == null || sender == null) return false;
 
+        if (!rawName.equals(localNameRaw))
+        {
+            localNameRaw = rawName;
+            localNameStd = Text.standardize(rawName);
+        }
+        return NameTokens.isSameName(sender, localNameStd);
     }
 
     // --- Internals ---
@@ -241,15 +256,15 @@ public final class StreakNameDecorator
         final int colon = text.indexOf(':');
         if (colon < 0) return;
 
-        final String prefix = text.substring(0, colon); // "<img=...><img=...>Name"
-        final Matcher m = LEADING_IMGS.matcher(prefix);
+        // "<img=...><img=...>Name:"
+        final int chainEnd = NameTokens.skipImgChain(text, 0);
 
-        if (m.find())
+        if (chainEnd > 0 && chainEnd <= colon)
         {
-            String chain = m.group(0);
+            String chain = text.substring(0, chainEnd);
             if (modicons.getStreakModIconIdx() >= 0)
             {
-                chain = chain.replaceFirst("<img=" + modicons.getStreakModIconIdx() + ">", "");
+                chain = NameTokens.removeFirst(chain, tokens.imgTag(modicons.getStreakModIconIdx()));
             }
             nativeChain = chain; // may be empty after strip — that's fine
             nativeLearned = true;
@@ -265,6 +280,7 @@ public final class StreakNameDecorator
 
     private void requestChatboxRefresh()
     {
+        metrics.count(PluginMetrics.Counter.INPUT_REFRESH_ASKED);
         if (chatboxRefreshQueued)
         {
             return;
@@ -309,65 +325,46 @@ public final class StreakNameDecorator
         final String text = chatboxInputWidget.getText();
         if (text == null || text.isEmpty()) return;
 
+        final int iconIdx = modicons.getStreakModIconIdx();
+        final boolean showNative = config.showNativeIcon();
+        if (isApplied(text, iconIdx, showNative)) return; // already decorated for this state
+
         final int colonIndex = text.indexOf(':');
         if (colonIndex < 0) return;
 
-        final String beforeColon = text.substring(0, colonIndex);
-        final String afterColon = text.substring(colonIndex);
-
         final String rawName = client.getLocalPlayer().getName();
         if (rawName == null) return;
 
         final String plainName = Text.removeTags(rawName);
         if (plainName == null || plainName.isEmpty()) return;
 
-        final String prefix = streakPrefix(currentStreak);
-        final String our = "<img=" + modicons.getStreakModIconIdx() + ">";
-        final String maybeNative = config.showNativeIcon() ? nativeChain : "";
-
-        String remainder = beforeColon;
-        if (!prefix.isEmpty() && remainder.startsWith(prefix))
-        {
-            remainder = remainder.substring(prefix.length());
-        }
-        if (remainder.startsWith(our))
-        {
-            remainder = remainder.substring(our.length());
-        }
-        if (!maybeNative.isEmpty() && remainder.startsWith(maybeNative))
-        {
-            remainder = remainder.substring(maybeNative.length());
-        }
-        else if (!nativeChain.isEmpty() && remainder.startsWith(nativeChain))
-        {
-            // Script wrote the native chain even though we hide it – drop it before rebuilding.
-            remainder = remainder.substring(nativeChain.length());
-        }
-
-        remainder = LEADING_IMGS.matcher(remainder).replaceFirst("");
-        String plainRemainder = Text.removeTags(remainder);
+        final String decorated = tokens.decorateInput(text, colonIndex, plainName,
+                currentStreak, iconIdx, nativeChain, showNative);
 
-        final String plainPrefix = Text.removeTags(prefix);
-        if (!plainPrefix.isEmpty() && plainRemainder.startsWith(plainPrefix))
+        metrics.count(PluginMetrics.Counter.INPUT_REFRESH_RUN);
+        if (!decorated.equals(text))
         {
-            plainRemainder = plainRemainder.substring(plainPrefix.length());
+            chatboxInputWidget.setText(decorated);
         }
+        markApplied(decorated, iconIdx, showNative);
+    }
 
-        String nameSuffix = "";
-        if (plainRemainder.startsWith(plainName))
-        {
-            nameSuffix = plainRemainder.substring(plainName.length());
-        }
-
-        final String decoratedName = Text.escapeJagex(plainName) + nameSuffix;
-        final String decorated = prefix + our + maybeNative + decoratedName + afterColon;
-
-        if (decorated.equals(text))
-        {
-            return;
-        }
+    private boolean isApplied(String text, int iconIdx, boolean showNative)
+    {
+        return text.length() == appliedTextLength
+                && text.hashCode() == appliedTextHash
+                && currentStreak == appliedStreak
+                && iconIdx == appliedIconIdx
+                && showNative == appliedShowNative;
+    }
 
-        chatboxInputWidget.setText(decorated);
+    private void markApplied(String text, int iconIdx, boolean showNative)
+    {
+        appliedTextLength = text.length();
+        appliedTextHash   = text.hashCode();
+        appliedStreak     = currentStreak;
+        appliedIconIdx    = iconIdx;
+        appliedShowNative = showNative;
     }
 
     private void maybeFlipActive()
@@ -379,10 +376,4 @@ public final class StreakNameDecorator
             requestChatboxRefresh();
         }
     }
-
-    private static String streakPrefix(int streak)
-    {
-        if (streak < 1) return "";
-        return "<col=" + STREAK_COLOR + ">" + streak + "</col> ";
-    }
 }
@@ -0,0 +1,39 @@
+package com.birdwatcher52.ministreak;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+
+import net.runelite.client.ui.FontManager;
+import net.runelite.client.ui.overlay.Overlay;
+import net.runelite.client.ui.overlay.OverlayPosition;
+
+/** Draws the cached {@link StreakCard} for the latest snapshot; one drawImage per frame. */
+@Singleton
+final class StreakOverlay extends Overlay
+{
+    private final StreakSnapshots snapshots;
+    private final UtcClock clock;
+    private final StreakCard card = new StreakCard(FontManager.getRunescapeSmallFont());
+
+    @Inject
+    StreakOverlay(StreakSnapshots snapshots, UtcClock clock)
+    {
+        this.snapshots = snapshots;
+        this.clock = clock;
+        setPosition(OverlayPosition.TOP_LEFT);
+    }
+
+    @Override
+    public Dimension render(Graphics2D g)
+    {
+        g.drawImage(card.image(snapshots.latest(), minutesToReset(clock)), 0, 0, null);
+        return card.size();
+    }
+
+    static long minutesToReset(UtcClock clock)
+    {
+        return Math.max(0, clock.nextResetMillis() - clock.millis()) / 60_000L;
+    }
+}
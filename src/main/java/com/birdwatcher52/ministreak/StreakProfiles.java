@@ -0,0 +1,65 @@
+package com.birdwatcher52.ministreak;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Streak state per account (keyed by account hash), loaded lazily on login.
+ * The last few profiles stay in memory, so hopping between a main and alts costs no storage reads.
+ */
+@Singleton
+final class StreakProfiles
+{
+    private static final int MAX_CACHED = 4;
+
+    private final MiniStreakStorage storage;
+
+    // access-ordered; the eldest entry is staged for writing and dropped when we overflow
+    private final Map<Long, StreakState> recent = new LinkedHashMap<Long, StreakState>(8, 0.75f, true)
+    {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, StreakState> eldest)
+        {
+            if (size() <= MAX_CACHED) return false;
+            storage.save(eldest.getKey(), eldest.getValue());
+            return true;
+        }
+    };
+
+    @Inject
+    StreakProfiles(MiniStreakStorage storage)
+    {
+        this.storage = storage;
+    }
+
+    /** The profile for {@code account}, from memory if recently used; NO_ACCOUNT yields a scratch state. */
+    StreakState get(long account)
+    {
+        if (account == MiniStreakStorage.NO_ACCOUNT) return new StreakState();
+
+        StreakState s = recent.get(account);
+        if (s == null)
+        {
+            s = new StreakState();
+            storage.loadInto(account, s);
+            recent.put(account, s);
+        }
+        return s;
+    }
+
+    /** Stage anything still dirty in every cached profile. */
+    void saveAll()
+    {
+        for (Map.Entry<Long, StreakState> e : recent.entrySet())
+        {
+            storage.save(e.getKey(), e.getValue());
+        }
+    }
+
+    void clear()
+    {
+        recent.clear();
+    }
+}
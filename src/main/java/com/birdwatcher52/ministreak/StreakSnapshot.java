@@ -0,0 +1,48 @@
+package com.birdwatcher52.ministreak;
+
+/**
+ * Immutable view of the displayed streak state, published by the client thread for UI readers
+ * (panel, overlays). {@code version} only moves when something in here changed.
+ */
+final class StreakSnapshot
+{
+    static final StreakSnapshot EMPTY = new StreakSnapshot(0, 0, 0, UtcClock.NO_DAY, 0, MiniTask.ALL_MASK);
+
+    final long version;
+    final int currentStreak;
+    final int bestStreak;
+    final int day;            // the day progressMask belongs to
+    final int progressMask;   // MiniTask bits done on day
+    final int requiredMask;
+
+    private StreakSnapshot(long version, int currentStreak, int bestStreak, int day, int progressMask, int requiredMask)
+    {
+        this.version = version;
+        this.currentStreak = currentStreak;
+        this.bestStreak = bestStreak;
+        this.day = day;
+        this.progressMask = progressMask;
+        this.requiredMask = requiredMask;
+    }
+
+    static StreakSnapshot of(long version, StreakState s, int today)
+    {
+        return new StreakSnapshot(version, s.getCurrentStreak(), s.getBestStreak(), today,
+                s.progressOn(today), s.getRequiredMask());
+    }
+
+    boolean isDone(MiniTask task)
+    {
+        return (progressMask & task.bit()) != 0;
+    }
+
+    boolean isRequired(MiniTask task)
+    {
+        return (requiredMask & task.bit()) != 0;
+    }
+
+    boolean isComplete()
+    {
+        return (progressMask & requiredMask) == requiredMask;
+    }
+}
@@ -0,0 +1,69 @@
+package com.birdwatcher52.ministreak;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Single-writer publication of {@link StreakSnapshot}s.
+ *
+ * The client thread calls publish() after anything that may have changed the state; a new snapshot
+ * is only built when the state's change counter, the day or the active profile moved. Readers on
+ * any thread take latest() without locking; listeners are told a new snapshot exists (on the
+ * client thread) and should hop threads themselves.
+ */
+@Singleton
+final class StreakSnapshots
+{
+    private final AtomicReference<StreakSnapshot> latest = new AtomicReference<>(StreakSnapshot.EMPTY);
+    private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+
+    // writer-side memo (client thread only)
+    private StreakState lastSource;
+    private long lastSourceVersion = -1;
+    private int lastDay = UtcClock.NO_DAY;
+
+    @Inject
+    StreakSnapshots()
+    {
+    }
+
+    StreakSnapshot latest()
+    {
+        return latest.get();
+    }
+
+    /** @return true if a new snapshot went out */
+    boolean publish(StreakState s, int today)
+    {
+        if (s == lastSource && s.getVersion() == lastSourceVersion && today == lastDay) return false;
+
+        lastSource = s;
+        lastSourceVersion = s.getVersion();
+        lastDay = today;
+        latest.set(StreakSnapshot.of(latest.get().version + 1, s, today));
+
+        for (Runnable r : listeners) r.run();
+        return true;
+    }
+
+    void addListener(Runnable r)
+    {
+        listeners.add(r);
+    }
+
+    void removeListener(Runnable r)
+    {
+        listeners.remove(r);
+    }
+
+    /** Forget the writer memo so the next publish always goes out (plugin restart). */
+    void reset()
+    {
+        lastSource = null;
+        lastSourceVersion = -1;
+        lastDay = UtcClock.NO_DAY;
+    }
+}
@@ -1,71 +1,211 @@
 package com.birdwatcher52.ministreak;
 
-import java.time.LocalDate;
-import java.time.ZoneOffset;
+import static com.birdwatcher52.ministreak.UtcClock.NO_DAY;
 
 public class StreakState
 {
+    // Dirty bits, one per persisted field (see MiniStreakStorage)
+    static final int DIRTY_CURRENT_STREAK     = 1;
+    static final int DIRTY_BEST_STREAK        = 1 << 1;
+    static final int DIRTY_LAST_SEEN          = 1 << 2;
+    static final int DIRTY_PROGRESS           = 1 << 3;
+    static final int DIRTY_LAST_COMPLETION    = 1 << 4;
+    static final int DIRTY_LAST_ANNOUNCEMENT  = 1 << 5;
+    static final int DIRTY_HISTORY            = 1 << 6;
+    static final int DIRTY_REQUIRED           = 1 << 7;
+    static final int DIRTY_OFFSET             = 1 << 8;
+    static final int DIRTY_ALL                = (1 << 9) - 1;
+
+    // offset not recorded; the same sentinel as NO_DAY, so the codec's day encoding carries it
+    static final int NO_OFFSET = NO_DAY;
+
     private int currentStreak = 0;
     private int bestStreak = 0;
 
-    // UTC date bookkeeping (YYYY-MM-DD)
-    private String lastSeenDateUTC = "";         // last date we observed (for day roll)
-    private String lastBirdhouseDateUTC = "";    // last date birdhouse was set up
-    private String lastHerbDateUTC = "";         // last date herb was planted
-    private String lastCompletionDateUTC = "";   // prevents double-counting once both minis are done
+    // UTC epoch days (UtcClock.NO_DAY = never)
+    private int lastSeenDay = NO_DAY;         // last day we observed (for day roll)
+    private int progressDay = NO_DAY;         // day progressMask belongs to
+    private int progressMask = 0;             // MiniTask bits done on progressDay
+    private int lastCompletionDay = NO_DAY;   // prevents double-counting once every required mini is done
+
+    // MiniTask bits that make a day count (from config); earlier sets live in the history
+    private int requiredMask = MiniTask.ALL_MASK;
+    private boolean requiredKnown = false; // set, or read from a record that has it
+
+    // reset offset (minutes) the day numbers above and in the history are counted in
+    private int offsetMinutes = NO_OFFSET;
 
     // NEW: once-per-day Notifier de-dupe
-    private String lastAnnouncementDateUTC = "";
+    private int lastAnnouncementDay = NO_DAY;
+
+    // per-day, per-task completion bits; the source of truth for streak lengths
+    private CompletionHistory history = new CompletionHistory();
+
+    // fields changed since the last drainDirty(); only real value changes count
+    private int dirty = 0;
+
+    // bumped on every real change (never reset); lets readers skip unchanged state
+    private long version = 0;
 
     public int getCurrentStreak() { return currentStreak; }
     public int getBestStreak() { return bestStreak; }
 
-    public String getLastSeenDateUTC() { return lastSeenDateUTC; }
-    public String getLastBirdhouseDateUTC() { return lastBirdhouseDateUTC; }
-    public String getLastHerbDateUTC() { return lastHerbDateUTC; }
-    public String getLastCompletionDateUTC() { return lastCompletionDateUTC; }
-    public String getLastAnnouncementDateUTC() { return lastAnnouncementDateUTC; }
+    public int getLastSeenDay() { return lastSeenDay; }
+    public int getProgressDay() { return progressDay; }
+    public int getProgressMask() { return progressMask; }
+    public int getRequiredMask() { return requiredMask; }
+    public int getLastCompletionDay() { return lastCompletionDay; }
+    public int getLastAnnouncementDay() { return lastAnnouncementDay; }
+    int getOffsetMinutes() { return offsetMinutes; }
 
-    public void setCurrentStreak(int v) { currentStreak = Math.max(0, v); }
-    public void setBestStreak(int v) { bestStreak = Math.max(bestStreak, Math.max(0, v)); } // monotonic best
-    public void setLastSeenDateUTC(String v) { lastSeenDateUTC = v != null ? v : ""; }
-    public void setLastBirdhouseDateUTC(String v) { lastBirdhouseDateUTC = v != null ? v : ""; }
-    public void setLastHerbDateUTC(String v) { lastHerbDateUTC = v != null ? v : ""; }
-    public void setLastCompletionDateUTC(String v) { lastCompletionDateUTC = v != null ? v : ""; }
-    public void setLastAnnouncementDateUTC(String v) { lastAnnouncementDateUTC = v != null ? v : ""; }
+    public void setCurrentStreak(int v)
+    {
+        final int next = Math.max(0, v);
+        if (next != currentStreak) { currentStreak = next; changed(DIRTY_CURRENT_STREAK); }
+    }
 
-    public void resetCurrentStreak() { currentStreak = 0; }
+    public void setBestStreak(int v) // monotonic best
+    {
+        final int next = Math.max(bestStreak, Math.max(0, v));
+        if (next != bestStreak) { bestStreak = next; changed(DIRTY_BEST_STREAK); }
+    }
+
+    public void setLastSeenDay(int day)
+    {
+        if (day != lastSeenDay) { lastSeenDay = day; changed(DIRTY_LAST_SEEN); }
+    }
 
-    public void markBirdhouseTodayUTC()
+    public void setProgress(int day, int mask)
     {
-        lastBirdhouseDateUTC = LocalDate.now(ZoneOffset.UTC).toString();
+        final int m = (day == NO_DAY) ? 0 : mask & MiniTask.ALL_MASK;
+        if (day != progressDay || m != progressMask) { progressDay = day; progressMask = m; changed(DIRTY_PROGRESS); }
     }
 
-    public void markHerbTodayUTC()
+    /** Set {@code task}'s bit for {@code day}; a new day starts from an empty mask. */
+    public void markProgress(MiniTask task, int day)
     {
-        lastHerbDateUTC = LocalDate.now(ZoneOffset.UTC).toString();
+        setProgress(day, (day == progressDay ? progressMask : 0) | task.bit());
     }
 
-    public boolean bothDoneTodayUTC()
+    /** Judge every day by {@code mask}: for profiles that never recorded the set they played under. */
+    void setRequiredMask(int mask)
     {
-        String today = LocalDate.now(ZoneOffset.UTC).toString();
-        return today.equals(lastBirdhouseDateUTC) && today.equals(lastHerbDateUTC);
+        final int next = normalize(mask);
+        if (requiredKnown && next == requiredMask) return;
+        requiredMask = next;
+        requiredKnown = true;
+        history.setRequiredMask(requiredMask);
+        changed(DIRTY_REQUIRED);
     }
 
-    public boolean bothDoneOn(String yyyymmdd)
+    /** From {@code day} on, {@code mask} is required; earlier days keep the set they were played under. */
+    void changeRequiredMask(int mask, int day)
     {
-        return yyyymmdd.equals(lastBirdhouseDateUTC) && yyyymmdd.equals(lastHerbDateUTC);
+        if (!requiredKnown)
+        {
+            setRequiredMask(mask);
+            return;
+        }
+        final int next = normalize(mask);
+        if (next == requiredMask) return;
+        history.requireFrom(day, next);
+        requiredMask = next;
+        changed(DIRTY_REQUIRED | DIRTY_HISTORY);
     }
 
-    public boolean birdhouseDoneTodayUTC()
+    private static int normalize(int mask)
     {
-        final String today = LocalDate.now(ZoneOffset.UTC).toString();
-        return today.equals(lastBirdhouseDateUTC);
+        return (mask & MiniTask.ALL_MASK) == 0 ? MiniTask.ALL_MASK : mask & MiniTask.ALL_MASK;
     }
 
-    public boolean herbDoneTodayUTC()
+    public void setLastCompletionDay(int day)
     {
-        final String today = LocalDate.now(ZoneOffset.UTC).toString();
-        return today.equals(lastHerbDateUTC);
+        if (day != lastCompletionDay) { lastCompletionDay = day; changed(DIRTY_LAST_COMPLETION); }
     }
+
+    public void setLastAnnouncementDay(int day)
+    {
+        if (day != lastAnnouncementDay) { lastAnnouncementDay = day; changed(DIRTY_LAST_ANNOUNCEMENT); }
+    }
+
+    void setOffsetMinutes(int minutes)
+    {
+        if (minutes != offsetMinutes) { offsetMinutes = minutes; changed(DIRTY_OFFSET); }
+    }
+
+    public void resetCurrentStreak() { setCurrentStreak(0); }
+
+    CompletionHistory getHistory() { return history; }
+
+    void setHistory(CompletionHistory h)
+    {
+        history = h != null ? h : new CompletionHistory();
+        history.setRequiredMask(requiredMask);
+        changed(DIRTY_HISTORY);
+    }
+
+    /**
+     * Move every day-keyed field and the history by {@code days}. Used when the reset offset
+     * renumbers the days, so today's progress and the run behind it carry over.
+     */
+    void shiftDays(int days)
+    {
+        if (days == 0) return;
+        setLastSeenDay(shift(lastSeenDay, days));
+        setProgress(shift(progressDay, days), progressMask);
+        setLastCompletionDay(shift(lastCompletionDay, days));
+        setLastAnnouncementDay(shift(lastAnnouncementDay, days));
+        setHistory(history.shifted(days));
+    }
+
+    private static int shift(int day, int days)
+    {
+        return day == NO_DAY ? NO_DAY : day + days;
+    }
+
+    /** Record a task as done on {@code day} in the history. */
+    void markDone(MiniTask task, int day)
+    {
+        if (history.mark(task, day)) changed(DIRTY_HISTORY);
+    }
+
+    /** MiniTask bits done on {@code day}. */
+    public int progressOn(int day)
+    {
+        return day == progressDay ? progressMask : 0;
+    }
+
+    public boolean isDoneOn(MiniTask task, int day)
+    {
+        return (progressOn(day) & task.bit()) != 0;
+    }
+
+    /** Every required mini done on {@code day}: one mask compare, whatever the task count. */
+    public boolean isCompleteOn(int day)
+    {
+        return (progressOn(day) & requiredMask) == requiredMask;
+    }
+
+    // --- Dirty tracking ---
+
+    private void changed(int bit)
+    {
+        dirty |= bit;
+        version++;
+    }
+
+    long getVersion() { return version; }
+
+    boolean isDirty() { return dirty != 0; }
+
+    /** Returns the fields changed since the last call and clears them. */
+    int drainDirty()
+    {
+        final int d = dirty;
+        dirty = 0;
+        return d;
+    }
+
+    /** Force a full write on the next save (e.g. when moving the record to a new key space). */
+    void markAllDirty() { dirty = DIRTY_ALL; }
 }
@@ -6,15 +6,19 @@ import net.runelite.api.WidgetNode;
 import net.runelite.api.widgets.Widget;
 import net.runelite.api.widgets.WidgetModalMode;
 import net.runelite.api.widgets.WidgetUtil;
-import net.runelite.client.callback.ClientThread;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
 import java.awt.Color;
 import java.util.ArrayDeque;
-import java.util.Queue;
+import java.util.HashMap;
+import java.util.Map;
 
-/** Thin wrapper on InterfaceID 660 (“Notification Display”). */
+/**
+ * Thin wrapper on InterfaceID 660 (“Notification Display”).
+ * Queued toasts are shown highest priority first, one at a time; a toast with the same key as a
+ * queued one replaces it, and the queue is capped so a burst can't back up the interface.
+ */
 @Singleton
 final class ToastService
 {
@@ -29,30 +33,125 @@ final class ToastService
     private static final int CHILD_CONTAINER_INDEX   = 13; // matches where 660 mounts in each layout
     private static final int CHILD_FIXED_INDEX       = 42;
 
-    private final Queue<Item> queue = new ArrayDeque<>();
+    private static final int MAX_QUEUED = 6;
+    private static final int MAX_OPEN_TICKS = 20; // close anyway if the slide-in never happens
+
+    enum Priority
+    {
+        // declaration order is display order
+        MILESTONE,
+        HALFWAY
+    }
+
+    private static final Priority[] PRIORITIES = Priority.values();
+
+    // guarded by this; enqueue can come from the EDT (debug buttons) as well as the client thread
+    @SuppressWarnings("unchecked")
+    private final ArrayDeque<Item>[] queues = new ArrayDeque[PRIORITIES.length];
+    private final Map<String, Item> byKey = new HashMap<>();
+    private int queued = 0;
+
+    // the one toast we have open; watched from processQueue instead of a poller per toast
+    private WidgetNode openNode;
+    private boolean openSeenWide;
+    private int openTicks;
+
+    {
+        for (int i = 0; i < queues.length; i++) queues[i] = new ArrayDeque<>();
+    }
 
     @Inject private Client client;
-    @Inject private ClientThread clientThread;
+    @Inject private PluginMetrics metrics;
+
+    /**
+     * Queue a toast. If one with the same non-null {@code key} is still waiting, it is superseded:
+     * its text is replaced and it keeps the higher of the two priorities.
+     */
+    synchronized void enqueue(String key, Priority priority, String title, String message, Color color)
+    {
+        final Item existing = (key == null) ? null : byKey.get(key);
+        if (existing != null)
+        {
+            existing.title = title;
+            existing.message = message;
+            existing.color = color;
+            if (priority.ordinal() < existing.priority.ordinal())
+            {
+                queues[existing.priority.ordinal()].remove(existing);
+                existing.priority = priority;
+                queues[priority.ordinal()].add(existing);
+            }
+            return;
+        }
+
+        if (queued >= MAX_QUEUED && !evictFor(priority)) return; // newcomer is the least important
+
+        final Item item = new Item(key, priority, title, message, color);
+        queues[priority.ordinal()].add(item);
+        if (key != null) byKey.put(key, item);
+        queued++;
+    }
 
-    void enqueue(String title, String message, Color color)
+    /** Drop the oldest toast of the lowest queued priority, if that is no more important than {@code p}. */
+    private boolean evictFor(Priority p)
     {
-        queue.add(new Item(title, message, color));
+        for (int i = queues.length - 1; i >= p.ordinal(); i--)
+        {
+            final Item victim = queues[i].poll();
+            if (victim != null)
+            {
+                forget(victim);
+                return true;
+            }
+        }
+        return false;
     }
 
-    /** Call this every tick to pump one toast (when 660 is not already open). */
+    private synchronized Item next()
+    {
+        for (ArrayDeque<Item> q : queues)
+        {
+            final Item item = q.poll();
+            if (item != null)
+            {
+                forget(item);
+                return item;
+            }
+        }
+        return null;
+    }
+
+    private void forget(Item item)
+    {
+        queued--;
+        if (item.key != null) byKey.remove(item.key, item);
+    }
+
+    /** Call this every tick: closes our finished toast, then pumps one toast (when 660 is not already open). */
     void processQueue()
     {
-        // If 660 is already up, wait.
+        final long t = metrics.start();
+        pumpOne();
+        metrics.stop(PluginMetrics.Probe.TOAST_QUEUE, t);
+    }
+
+    private void pumpOne()
+    {
+        if (openNode != null && !closeIfDone()) return;
+
+        // If 660 is already up (ours or the game's), wait.
         if (client.getWidget(INTERFACE_ID, 1) != null)
         {
             return;
         }
-        final Item next = queue.poll();
+        final Item next = next();
         if (next == null) return;
 
         // Open 660 under the correct parent container for the current layout.
         final int parent = getParentComponentId();
-        final WidgetNode node = client.openInterface(parent, INTERFACE_ID, WidgetModalMode.MODAL_CLICKTHROUGH);
+        openNode = client.openInterface(parent, INTERFACE_ID, WidgetModalMode.MODAL_CLICKTHROUGH);
+        openSeenWide = false;
+        openTicks = 0;
 
         // Encode RGB without alpha (client expects 24-bit int; -1 means default/white).
         final int rgb = (next.color == null) ? -1 : ((next.color.getRed() & 0xFF) << 16)
@@ -62,16 +161,27 @@ final class ToastService
         // Populate content
         client.runScript(SCRIPT_ID, next.title, next.message, rgb);
 
-        // Close after it animates out (width goes to 0).
-        clientThread.invokeLater(() -> {
-            final Widget w = client.getWidget(INTERFACE_ID, 1);
-            if (w == null || w.getWidth() > 0)
-            {
-                return false; // re-check next tick until closed
-            }
-            client.closeInterface(node, true);
+    }
+
+    /** Close our toast once it has animated in and back out (width back to 0). @return true if none is open now */
+    private boolean closeIfDone()
+    {
+        final Widget w = client.getWidget(INTERFACE_ID, 1);
+        if (w == null)
+        {
+            openNode = null; // closed by someone else (e.g. a layout change)
             return true;
-        });
+        }
+        if (w.getWidth() > 0)
+        {
+            openSeenWide = true;
+            return false;
+        }
+        if (!openSeenWide && ++openTicks < MAX_OPEN_TICKS) return false; // not animated in yet
+
+        client.closeInterface(openNode, true);
+        openNode = null;
+        return true;
     }
 
     private int getParentComponentId()
@@ -88,7 +198,9 @@ final class ToastService
 
     private static final class Item
     {
-        final String title, message; final Color color;
-        Item(String t, String m, Color c) { title = t; message = m; color = c; }
+        final String key;
+        Priority priority;
+        String title, message; Color color;
+        Item(String k, Priority p, String t, String m, Color c) { key = k; priority = p; title = t; message = m; color = c; }
     }
 }
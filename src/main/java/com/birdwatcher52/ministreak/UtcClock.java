@@ -0,0 +1,118 @@
+package com.birdwatcher52.ministreak;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Current streak day as a primitive epoch day, worked out only when it can change
+ * (the {@link RolloverScheduler} timer, login, clock jumps) and by replays per simulated tick.
+ *
+ * A day is a UTC day shifted by the configured reset offset (0 = UTC midnight).
+ * Everything in between (chat handlers, services, panel) reads the cached value.
+ * The "YYYY-MM-DD" form only exists at the storage and UI edges via format/parse.
+ * The time source can be swapped (tests, replays) with setClock().
+ */
+@Singleton
+final class UtcClock
+{
+    /** "No date recorded" marker for epoch-day fields. */
+    static final int NO_DAY = Integer.MIN_VALUE;
+
+    private static final long MILLIS_PER_DAY = 86_400_000L;
+
+    private volatile Clock clock = Clock.systemUTC();
+    private volatile int today = NO_DAY;
+    private volatile long offsetMillis = 0;
+
+    @Inject
+    UtcClock()
+    {
+    }
+
+    /** Replace the time source and re-read the day immediately. */
+    void setClock(Clock clock)
+    {
+        this.clock = clock;
+        tick();
+    }
+
+    /** Shift the day boundary: reset happens at 00:00 UTC minus {@code minutes}. Re-reads the day. */
+    void setOffsetMinutes(int minutes)
+    {
+        this.offsetMillis = minutes * 60_000L;
+        tick();
+    }
+
+    int getOffsetMinutes()
+    {
+        return (int) (offsetMillis / 60_000L);
+    }
+
+    /**
+     * Days to add to a day numbered under the {@code minutes} offset so that it keeps its place
+     * relative to today (that offset's today becomes ours).
+     */
+    int shiftFrom(int minutes)
+    {
+        final long now = clock.millis();
+        return dayAt(now) - (int) Math.floorDiv(now + minutes * 60_000L, MILLIS_PER_DAY);
+    }
+
+    /** Re-read the wall clock and cache the day. */
+    int tick()
+    {
+        final int day = dayAt(clock.millis());
+        today = day;
+        return day;
+    }
+
+    /** Day for the wall clock right now, without touching the cached value. */
+    int peek()
+    {
+        return dayAt(clock.millis());
+    }
+
+    /** Wall-clock millis at which the day after the cached one begins. */
+    long nextResetMillis()
+    {
+        return (today() + 1L) * MILLIS_PER_DAY - offsetMillis;
+    }
+
+    private int dayAt(long millis)
+    {
+        return (int) Math.floorDiv(millis + offsetMillis, MILLIS_PER_DAY);
+    }
+
+    /** Epoch day as of the last tick (reads the clock if no tick has happened yet). */
+    int today()
+    {
+        final int day = today;
+        return day != NO_DAY ? day : tick();
+    }
+
+    long millis()
+    {
+        return clock.millis();
+    }
+
+    static String format(int epochDay)
+    {
+        return epochDay == NO_DAY ? "" : LocalDate.ofEpochDay(epochDay).toString();
+    }
+
+    static int parse(String yyyymmdd)
+    {
+        if (yyyymmdd == null || yyyymmdd.isEmpty()) return NO_DAY;
+        try
+        {
+            return (int) LocalDate.parse(yyyymmdd.trim()).toEpochDay();
+        }
+        catch (DateTimeParseException e)
+        {
+            return NO_DAY;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.birdwatcher52.ministreak.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free latency histogram with fixed power-of-two buckets (nanoseconds):
+ * - record() is a couple of atomic adds, safe from any thread.
+ * - Bucket k holds samples in [2^(k-1), 2^k) ns, so percentiles are upper bounds within 2x.
+ * - Reads are not a consistent snapshot; good enough for a debug readout.
+ */
+public final class LatencyHistogram {
+    private static final int BUCKETS = 40; // last bucket: >= ~4.6 minutes
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long nanos) {
+        if (nanos < 0) nanos = 0;
+        final int b = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(nanos));
+        buckets.incrementAndGet(b);
+        count.incrementAndGet();
+
+        long m = max.get();
+        while (nanos > m && !max.compareAndSet(m, nanos)) m = max.get();
+    }
+
+    public long count() {
+        return count.get();
+    }
+
+    public long maxNanos() {
+        return max.get();
+    }
+
+    /** Upper bound (ns) of the bucket holding the p-th percentile, p in (0, 1]; 0 if empty. */
+    public long percentileNanos(double p) {
+        final long n = count.get();
+        if (n == 0) return 0;
+
+        final long rank = Math.max(1, (long) Math.ceil(p * n));
+        long seen = 0;
+        for (int b = 0; b < BUCKETS; b++) {
+            seen += buckets.get(b);
+            if (seen >= rank) return Math.min(b == 0 ? 0 : 1L << b, max.get());
+        }
+        return max.get();
+    }
+
+    public void reset() {
+        for (int b = 0; b < BUCKETS; b++) buckets.set(b, 0);
+        count.set(0);
+        max.set(0);
+    }
+}
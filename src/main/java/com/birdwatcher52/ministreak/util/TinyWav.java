@@ -4,26 +4,67 @@ import javax.sound.sampled.*;
 import java.io.*;
 import java.net.URL;
 import java.nio.file.*;
+import java.util.Arrays;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicInteger;
-
-import static javax.sound.sampled.LineEvent.Type.CLOSE;
-import static javax.sound.sampled.LineEvent.Type.STOP;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * Tiny, dependency-free WAV player for short UI pips:
- * - Preloads WAVs to 16-bit PCM in memory.
- * - Creates a fresh Clip per play (overlap-safe) with a small cap.
- * - Per-key debounce window.
- * - No globals; make one instance per plugin/module.
+ * - Preloads WAVs and resamples them once to the mixer format (44.1 kHz, 16-bit stereo),
+ *   either inline or on a caller-supplied executor (registerResourceAsync).
+ * - One long-lived SourceDataLine fed by a daemon mixer thread that sums active voices
+ *   with software gain; play() is a lock-free enqueue and never touches the audio system.
+ * - Small per-sound voice cap and a per-key debounce window.
+ * - No globals; make one instance per plugin/module and close() it on shutdown.
  */
 public final class TinyWav {
     private static final int DEFAULT_DEBOUNCE_MS = 90;
     private static final int MAX_CONCURRENT_CLIPS = 4;
+    private static final int MAX_VOICES = 16;
+    // a play() that arrives while its sound is still decoding is kept this long, then dropped
+    private static final long PENDING_PLAY_WINDOW_NS = 250_000_000L;
+
+    private static final float RATE = 44_100f;
+    private static final int CHANNELS = 2;
+    private static final AudioFormat MIX_FORMAT = new AudioFormat(RATE, 16, CHANNELS, true, false);
+
+    // ~5.8 ms per block; the line holds four blocks, so worst-case queueing is ~23 ms
+    private static final int BLOCK_FRAMES = 256;
+    private static final int LINE_BLOCKS = 4;
+    private static final long REOPEN_BACKOFF_NS = 5_000_000_000L;
+
+    /** Opens and starts the output line; tests swap in a stub where there is no audio device. */
+    interface LineSource {
+        SourceDataLine open(AudioFormat format, int bufferBytes) throws LineUnavailableException;
+    }
+
+    private final LineSource lineSource;
 
     private final Map<String, PcmBuffer> cache = new ConcurrentHashMap<>();
     private final Map<String, Long> lastPlayNs = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<PcmBuffer>> loading = new ConcurrentHashMap<>();
+
+    // play() -> mixer hand-off; the mixer thread owns everything below it
+    private final Queue<Voice> incoming = new ConcurrentLinkedQueue<>();
+    private volatile Thread mixer;
+    private volatile boolean closing;
+    private volatile long lineFailedAtNs;
+    private volatile LatencyHistogram startLatency;
+
+    public TinyWav() {
+        this(TinyWav::openSystemLine);
+    }
+
+    TinyWav(LineSource lineSource) {
+        this.lineSource = lineSource;
+    }
 
     // --- Public API ----------------------------------------------------------
 
@@ -34,6 +75,32 @@ public final class TinyWav {
         cache.put(key, loadToPcm(url));
     }
 
+    /**
+     * Decode a classpath WAV on {@code executor}. The returned future completes once the key is
+     * playable (or exceptionally if the file is missing or unreadable).
+     */
+    public CompletableFuture<Void> registerResourceAsync(String key, String resourcePath, Executor executor) {
+        final URL url = TinyWav.class.getResource(resourcePath);
+        if (url == null) {
+            final CompletableFuture<Void> failed = new CompletableFuture<>();
+            failed.completeExceptionally(new FileNotFoundException("Classpath WAV not found: " + resourcePath));
+            return failed;
+        }
+
+        final CompletableFuture<PcmBuffer> decode = CompletableFuture.supplyAsync(() -> {
+            try {
+                return loadToPcm(url);
+            } catch (IOException | UnsupportedAudioFileException e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+        loading.put(key, decode);
+
+        return decode
+                .thenAccept(pcm -> cache.put(key, pcm))
+                .whenComplete((v, err) -> loading.remove(key, decode));
+    }
+
     /** Optional convenience: derive key from filename (no extension). */
     public void registerResourceAutoKey(String resourcePath) throws IOException, UnsupportedAudioFileException {
         registerResource(basenameNoExt(resourcePath), resourcePath);
@@ -53,16 +120,52 @@ public final class TinyWav {
     /** Play with explicit debounce window (ms). */
     public void play(String key, int volumePercent, int debounceMs) {
         final PcmBuffer pcm = cache.get(key);
-        if (pcm == null) return;                 // not registered
-        if (volumePercent <= 0) return;          // muted
-        if (!allowed(key, debounceMs)) return;   // per-key rate limit
-        playOnce(pcm, volumePercent);
+        final CompletableFuture<PcmBuffer> pending = (pcm == null) ? loading.get(key) : null;
+        if (pcm == null && pending == null) return; // not registered
+        if (volumePercent <= 0) return;             // muted
+        if (!allowed(key, debounceMs)) return;      // per-key rate limit
+
+        if (pcm != null) {
+            playOnce(pcm, volumePercent);
+            return;
+        }
+
+        // Still decoding: play when it lands if that's soon enough, never block the caller
+        final long askedNs = System.nanoTime();
+        pending.thenAccept(p -> {
+            if (System.nanoTime() - askedNs <= PENDING_PLAY_WINDOW_NS) playOnce(p, volumePercent);
+        });
     }
 
-    /** Optional cleanup (clips already playing will still finish). */
+    /**
+     * Optional: record play()-to-audible latency (enqueue wait + line backlog) into {@code h}.
+     * Samples are recorded on the mixer thread.
+     */
+    public void setStartLatencyHistogram(LatencyHistogram h) {
+        this.startLatency = h;
+    }
+
+    /** Optional cleanup (voices already playing will still finish). */
     public void clear() {
         cache.clear();
         lastPlayNs.clear();
+        loading.clear();
+    }
+
+    /** Stop the mixer thread and release the line. A later play() starts it again. */
+    public void close() {
+        final Thread t = mixer;
+        if (t == null) return;
+        closing = true;
+        LockSupport.unpark(t);
+        try {
+            t.join(500);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            if (mixer == t) mixer = null;
+        }
     }
 
     // --- Internals -----------------------------------------------------------
@@ -74,48 +177,135 @@ public final class TinyWav {
     }
 
     private void playOnce(PcmBuffer pcm, int volPercent) {
-        if (pcm.getActive() >= MAX_CONCURRENT_CLIPS) return; // small safety cap
+        if (!pcm.tryAcquire()) return; // small safety cap
+
+        final int gain = (Math.min(volPercent, 100) << 15) / 100; // linear amplitude, Q15
+        incoming.offer(new Voice(pcm, gain, System.nanoTime()));
+        wakeMixer();
+    }
+
+    private void wakeMixer() {
+        Thread t = mixer;
+        if (t != null && t.isAlive()) {
+            LockSupport.unpark(t);
+            return;
+        }
+
+        synchronized (this) {
+            t = mixer;
+            if (t != null && t.isAlive()) {
+                LockSupport.unpark(t);
+                return;
+            }
+            final long failed = lineFailedAtNs;
+            if (failed != 0 && System.nanoTime() - failed < REOPEN_BACKOFF_NS) {
+                dropIncoming(); // no device right now; don't let voices pile up
+                return;
+            }
+            closing = false;
+            t = new Thread(this::mixLoop, "TinyWav-mixer");
+            t.setDaemon(true);
+            t.setPriority(Thread.MAX_PRIORITY);
+            mixer = t;
+            t.start();
+        }
+    }
 
+    private void mixLoop() {
+        final SourceDataLine line;
         try {
-            Clip clip = AudioSystem.getClip();
+            line = lineSource.open(MIX_FORMAT, BLOCK_FRAMES * LINE_BLOCKS * MIX_FORMAT.getFrameSize());
+            lineFailedAtNs = 0;
+        } catch (LineUnavailableException | IllegalArgumentException | SecurityException e) {
+            // mixer unavailable — stay silent for UI pips and retry after a backoff
+            lineFailedAtNs = System.nanoTime();
+            dropIncoming();
+            return;
+        }
 
-            // Re-wrap PCM bytes in a fresh stream for this play
-            ByteArrayInputStream bais = new ByteArrayInputStream(pcm.data);
-            AudioInputStream ais = new AudioInputStream(bais, pcm.format, pcm.frameLength);
+        final Voice[] active = new Voice[MAX_VOICES];
+        final int[] acc = new int[BLOCK_FRAMES * CHANNELS];
+        final byte[] out = new byte[acc.length * 2];
+        final int frameSize = MIX_FORMAT.getFrameSize();
+        int count = 0;
 
-            clip.addLineListener(ev -> {
-                if (ev.getType() == STOP || ev.getType() == CLOSE) {
-                    try { clip.close(); } catch (Exception ignored) {}
-                    pcm.decActive();
+        try {
+            while (!closing) {
+                // Pull newly queued voices
+                Voice v;
+                while ((v = incoming.poll()) != null) {
+                    if (count < MAX_VOICES) {
+                        active[count++] = v;
+                    } else {
+                        v.pcm.release();
+                    }
                 }
-            });
 
-            clip.open(ais); // copies PCM into the Clip buffer
-            try {
-                setGain(clip, volPercent);
-                pcm.incActive();
-                clip.start(); // non-blocking
-            } finally {
-                try { ais.close(); } catch (IOException ignored) {}
+                if (count == 0) {
+                    LockSupport.park(this); // play() unparks us
+                    continue;
+                }
+
+                // Sum the block
+                Arrays.fill(acc, 0);
+                final long now = System.nanoTime();
+                final int backlogFrames = (line.getBufferSize() - line.available()) / frameSize;
+                for (int i = 0; i < count; ) {
+                    v = active[i];
+                    if (v.pos == 0) recordStart(now - v.enqueuedNs + framesToNanos(backlogFrames));
+
+                    final short[] src = v.pcm.samples;
+                    final int n = Math.min(acc.length, src.length - v.pos);
+                    for (int j = 0; j < n; j++) acc[j] += (src[v.pos + j] * v.gain) >> 15;
+                    v.pos += n;
+
+                    if (v.pos >= src.length) {
+                        v.pcm.release();
+                        active[i] = active[--count];
+                        active[count] = null;
+                    } else {
+                        i++;
+                    }
+                }
+
+                // Clamp and write little-endian; write() blocks while the line is full, which paces us
+                for (int j = 0, b = 0; j < acc.length; j++) {
+                    int s = acc[j];
+                    if (s > Short.MAX_VALUE) s = Short.MAX_VALUE;
+                    else if (s < Short.MIN_VALUE) s = Short.MIN_VALUE;
+                    out[b++] = (byte) s;
+                    out[b++] = (byte) (s >> 8);
+                }
+                line.write(out, 0, out.length);
             }
-        } catch (LineUnavailableException | IllegalArgumentException e) {
-            // mixer unavailable or no gain control — ignore for UI pips
         } catch (Exception ignored) {
             // keep helper fail-safe for gameplay
+        } finally {
+            for (int i = 0; i < count; i++) active[i].pcm.release();
+            dropIncoming();
+            try { line.stop(); line.close(); } catch (Exception ignored) {}
         }
     }
 
-    private static void setGain(Clip clip, int volPercent) {
-        try {
-            FloatControl gain = (FloatControl) clip.getControl(FloatControl.Type.MASTER_GAIN);
-            float dB = (volPercent >= 100) ? 0f
-                    : (volPercent <= 0) ? gain.getMinimum()
-                    : (float) (20.0 * Math.log10(Math.max(0.0001, volPercent / 100.0)));
-            dB = Math.max(gain.getMinimum(), Math.min(gain.getMaximum(), dB));
-            gain.setValue(dB);
-        } catch (IllegalArgumentException ignored) {
-            // no MASTER_GAIN on this mixer; let default volume play
-        }
+    private static SourceDataLine openSystemLine(AudioFormat format, int bufferBytes) throws LineUnavailableException {
+        final SourceDataLine line = AudioSystem.getSourceDataLine(format);
+        line.open(format, bufferBytes);
+        line.start();
+        return line;
+    }
+
+    private void dropIncoming() {
+        Voice v;
+        while ((v = incoming.poll()) != null) v.pcm.release();
+    }
+
+    private void recordStart(long nanos) {
+        final LatencyHistogram h = startLatency;
+        if (h != null) h.record(nanos);
+    }
+
+    private static long framesToNanos(int frames) {
+        return (long) (frames * 1_000_000_000.0 / RATE);
     }
 
     private static String basenameNoExt(String path) {
@@ -126,7 +316,7 @@ public final class TinyWav {
         return (dot >= 0) ? f.substring(0, dot) : f;
     }
 
-    /** Load any WAV into 16-bit PCM in memory for instant Clip playback. */
+    /** Load any WAV into interleaved 16-bit samples in the mixer format. */
     private static PcmBuffer loadToPcm(URL wavUrl) throws IOException, UnsupportedAudioFileException {
         try (AudioInputStream in = AudioSystem.getAudioInputStream(wavUrl)) {
             AudioFormat src = in.getFormat();
@@ -141,33 +331,92 @@ public final class TinyWav {
             );
             AudioInputStream pcm = AudioSystem.getAudioInputStream(dst, in);
 
+            return new PcmBuffer(toMixFormat(readAll(pcm, dst.getFrameSize()), dst.getChannels(), dst.getSampleRate()));
+        }
+    }
+
+    /** Read the whole stream into one array sized from the frame count when the header gives it. */
+    private static byte[] readAll(AudioInputStream pcm, int frameSize) throws IOException {
+        final long frames = pcm.getFrameLength();
+        if (frames == AudioSystem.NOT_SPECIFIED || frames * frameSize > Integer.MAX_VALUE) {
             ByteArrayOutputStream baos = new ByteArrayOutputStream();
             byte[] buf = new byte[4096];
             int r;
             while ((r = pcm.read(buf)) != -1) baos.write(buf, 0, r);
+            return baos.toByteArray();
+        }
 
-            byte[] data = baos.toByteArray();
-            long frameLength = data.length / dst.getFrameSize();
-            return new PcmBuffer(dst, data, frameLength);
+        byte[] data = new byte[(int) (frames * frameSize)];
+        int off = 0;
+        while (off < data.length) {
+            int r = pcm.read(data, off, data.length - off);
+            if (r < 0) break;
+            off += r;
+        }
+        return (off == data.length) ? data : Arrays.copyOf(data, off); // truncated file
+    }
+
+    /** 16-bit LE at any rate/channel count -> 44.1 kHz stereo, linear interpolation. */
+    private static short[] toMixFormat(byte[] data, int channels, float rate) {
+        final int inFrames = data.length / (channels * 2);
+        if (inFrames == 0) return new short[0];
+
+        final int outFrames = (int) Math.max(1, (long) inFrames * RATE / rate);
+        final short[] out = new short[outFrames * CHANNELS];
+        final double step = rate / RATE;
+
+        for (int f = 0; f < outFrames; f++) {
+            final double pos = f * step;
+            final int i0 = Math.min((int) pos, inFrames - 1);
+            final int i1 = Math.min(i0 + 1, inFrames - 1);
+            final double t = pos - (int) pos;
+            for (int c = 0; c < CHANNELS; c++) {
+                final int ch = Math.min(c, channels - 1); // mono -> both sides; >2 keeps front pair
+                final int a = sample(data, i0, ch, channels);
+                final int b = sample(data, i1, ch, channels);
+                out[f * CHANNELS + c] = (short) Math.round(a + (b - a) * t);
+            }
         }
+        return out;
     }
 
-    // --- Data holder ---------------------------------------------------------
+    private static int sample(byte[] data, int frame, int ch, int channels) {
+        final int o = (frame * channels + ch) * 2;
+        return (short) ((data[o] & 0xff) | (data[o + 1] << 8));
+    }
+
+    // --- Data holders --------------------------------------------------------
 
     private static final class PcmBuffer {
-        final AudioFormat format;
-        final byte[] data;
-        final long frameLength;
-        private final AtomicInteger activeClips = new AtomicInteger(0);
-
-        PcmBuffer(AudioFormat f, byte[] d, long frames) {
-            this.format = f;
-            this.data = d;
-            this.frameLength = frames;
+        final short[] samples; // interleaved, MIX_FORMAT
+        private final AtomicInteger activeVoices = new AtomicInteger(0);
+
+        PcmBuffer(short[] samples) {
+            this.samples = samples;
+        }
+
+        boolean tryAcquire() {
+            int v;
+            do {
+                v = activeVoices.get();
+                if (v >= MAX_CONCURRENT_CLIPS) return false;
+            } while (!activeVoices.compareAndSet(v, v + 1));
+            return true;
         }
 
-        void incActive() { activeClips.incrementAndGet(); }
-        void decActive() { activeClips.updateAndGet(v -> Math.max(0, v - 1)); }
-        int  getActive() { return activeClips.get(); }
+        void release() { activeVoices.updateAndGet(v -> Math.max(0, v - 1)); }
+    }
+
+    private static final class Voice {
+        final PcmBuffer pcm;
+        final int gain;
+        final long enqueuedNs;
+        int pos;
+
+        Voice(PcmBuffer pcm, int gain, long enqueuedNs) {
+            this.pcm = pcm;
+            this.gain = gain;
+            this.enqueuedNs = enqueuedNs;
+        }
     }
 }
@@ -0,0 +1,241 @@
+package com.birdwatcher52.ministreak.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Single-pass, allocation-free multi-phrase matcher for chat lines:
+ * - Rules are AND-ed clauses; a clause is a set of alternative phrases (OR).
+ * - All phrases compile into one Aho-Corasick automaton (dense DFA over a tiny alphabet).
+ * - Input is case-folded and has {@code <tags>} skipped on the fly, which matches
+ *   {@code Text.removeTags(s).toLowerCase()} without building either string.
+ * - match() returns a bitmask of satisfied rule ids (0 = nothing), so misses cost one scan.
+ */
+public final class TriggerMatcher {
+    private static final int MAX_RULES = 64;
+    private static final int MAX_CLAUSES = 64;
+
+    private final int[] charClass;      // folded ASCII char -> alphabet index (0 = not in any phrase)
+    private final int alphabet;
+    private final int[] delta;          // state * alphabet + class -> next state
+    private final long[] clauseOut;     // clauses satisfied on reaching a state (incl. failure chain)
+    private final long[] anchoredOut;   // start-anchored clauses whose phrase ends exactly here
+    private final int[] depth;          // length of the trie path for each state
+    private final int maxAnchoredLen;
+    private final int[] ruleIds;
+    private final long[] ruleClauses;   // clauses each rule needs
+
+    private TriggerMatcher(Builder b) {
+        // --- alphabet: every char used in some phrase, 0 reserved for "anything else"
+        charClass = new int[128];
+        int classes = 1;
+        for (Phrase p : b.phrases) {
+            for (int i = 0; i < p.text.length(); i++) {
+                final char c = p.text.charAt(i);
+                if (charClass[c] == 0) charClass[c] = classes++;
+            }
+        }
+        alphabet = classes;
+
+        // --- trie
+        final List<int[]> gotoRows = new ArrayList<>();
+        final List<long[]> outs = new ArrayList<>(); // {clauseOut, anchoredOut}
+        final List<Integer> depths = new ArrayList<>();
+        gotoRows.add(newRow(alphabet));
+        outs.add(new long[2]);
+        depths.add(0);
+
+        int maxAnchored = 0;
+        for (Phrase p : b.phrases) {
+            int state = 0;
+            for (int i = 0; i < p.text.length(); i++) {
+                final int cls = charClass[p.text.charAt(i)];
+                int next = gotoRows.get(state)[cls];
+                if (next < 0) {
+                    next = gotoRows.size();
+                    gotoRows.get(state)[cls] = next;
+                    gotoRows.add(newRow(alphabet));
+                    outs.add(new long[2]);
+                    depths.add(i + 1);
+                }
+                state = next;
+            }
+            if (p.anchored) {
+                outs.get(state)[1] |= 1L << p.clause;
+                maxAnchored = Math.max(maxAnchored, p.text.length());
+            } else {
+                outs.get(state)[0] |= 1L << p.clause;
+            }
+        }
+        maxAnchoredLen = maxAnchored;
+
+        // --- failure links, folded into a full DFA (BFS order)
+        final int states = gotoRows.size();
+        delta = new int[states * alphabet];
+        clauseOut = new long[states];
+        anchoredOut = new long[states];
+        depth = new int[states];
+        final int[] fail = new int[states];
+        for (int s = 0; s < states; s++) {
+            clauseOut[s] = outs.get(s)[0];
+            anchoredOut[s] = outs.get(s)[1];
+            depth[s] = depths.get(s);
+        }
+
+        final ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int c = 0; c < alphabet; c++) {
+            final int next = gotoRows.get(0)[c];
+            if (next > 0) {
+                fail[next] = 0;
+                delta[c] = next;
+                queue.add(next);
+            } else {
+                delta[c] = 0;
+            }
+        }
+        while (!queue.isEmpty()) {
+            final int s = queue.poll();
+            clauseOut[s] |= clauseOut[fail[s]];
+            for (int c = 0; c < alphabet; c++) {
+                final int next = gotoRows.get(s)[c];
+                if (next > 0) {
+                    fail[next] = delta[fail[s] * alphabet + c];
+                    delta[s * alphabet + c] = next;
+                    queue.add(next);
+                } else {
+                    delta[s * alphabet + c] = delta[fail[s] * alphabet + c];
+                }
+            }
+        }
+
+        ruleIds = new int[b.rules.size()];
+        ruleClauses = new long[b.rules.size()];
+        for (int r = 0; r < ruleIds.length; r++) {
+            ruleIds[r] = b.rules.get(r)[0];
+            for (int c = b.rules.get(r)[1]; c < b.rules.get(r)[2]; c++) ruleClauses[r] |= 1L << c;
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return bitmask of matched rule ids (bit {@code id} set), or 0 if no rule matched.
+     */
+    public long match(CharSequence s) {
+        if (s == null) return 0L;
+
+        final int n = s.length();
+        int state = 0;
+        int pos = 0;          // index into the visible (tag-free) text
+        long clauses = 0L;
+
+        for (int i = 0; i < n; i++) {
+            char c = s.charAt(i);
+            if (c == '<') {
+                final int close = indexOf(s, '>', i + 1);
+                if (close >= 0) { i = close; continue; } // same as removeTags' <[^>]*>
+            }
+
+            if (c < 128) {
+                if (c >= 'A' && c <= 'Z') c += 32;
+            } else {
+                c = Character.toLowerCase(c);
+            }
+            final int cls = c < 128 ? charClass[c] : 0;
+
+            state = delta[state * alphabet + cls];
+            clauses |= clauseOut[state];
+            if (pos < maxAnchoredLen && depth[state] == pos + 1) clauses |= anchoredOut[state];
+            pos++;
+        }
+
+        if (clauses == 0L) return 0L;
+
+        long hits = 0L;
+        for (int r = 0; r < ruleClauses.length; r++) {
+            if ((clauses & ruleClauses[r]) == ruleClauses[r]) hits |= 1L << ruleIds[r];
+        }
+        return hits;
+    }
+
+    private static int indexOf(CharSequence s, char c, int from) {
+        for (int i = from, n = s.length(); i < n; i++) {
+            if (s.charAt(i) == c) return i;
+        }
+        return -1;
+    }
+
+    private static int[] newRow(int size) {
+        final int[] row = new int[size];
+        Arrays.fill(row, -1);
+        return row;
+    }
+
+    // --- Builder -------------------------------------------------------------
+
+    public static final class Builder {
+        private final List<Phrase> phrases = new ArrayList<>();
+        private final List<int[]> rules = new ArrayList<>(); // {id, firstClause, endClause}
+        private int clauses = 0;
+
+        private Builder() {}
+
+        /** Start a new rule; following clauses belong to it until the next rule(). */
+        public Builder rule(int id) {
+            if (id < 0 || id >= MAX_RULES) throw new IllegalArgumentException("rule id out of range: " + id);
+            rules.add(new int[]{id, clauses, clauses});
+            return this;
+        }
+
+        /** Line must contain at least one of the phrases (lower-case ASCII). */
+        public Builder contains(String... anyOf) {
+            return clause(false, anyOf);
+        }
+
+        /** Line (after tag removal) must start with one of the phrases. */
+        public Builder startsWith(String... anyOf) {
+            return clause(true, anyOf);
+        }
+
+        public TriggerMatcher build() {
+            for (int[] r : rules) {
+                if (r[1] == r[2]) throw new IllegalStateException("rule " + r[0] + " has no clauses");
+            }
+            return new TriggerMatcher(this);
+        }
+
+        private Builder clause(boolean anchored, String... anyOf) {
+            if (rules.isEmpty()) throw new IllegalStateException("call rule() first");
+            if (clauses >= MAX_CLAUSES) throw new IllegalStateException("too many clauses");
+            if (anyOf.length == 0) throw new IllegalArgumentException("empty clause");
+            for (String p : anyOf) {
+                if (p.isEmpty()) throw new IllegalArgumentException("empty phrase");
+                for (int i = 0; i < p.length(); i++) {
+                    final char c = p.charAt(i);
+                    if (c >= 128 || (c >= 'A' && c <= 'Z') || c == '<') {
+                        throw new IllegalArgumentException("phrases must be lower-case ASCII: " + p);
+                    }
+                }
+                phrases.add(new Phrase(p, clauses, anchored));
+            }
+            rules.get(rules.size() - 1)[2] = ++clauses;
+            return this;
+        }
+    }
+
+    private static final class Phrase {
+        final String text;
+        final int clause;
+        final boolean anchored;
+
+        Phrase(String text, int clause, boolean anchored) {
+            this.text = text;
+            this.clause = clause;
+            this.anchored = anchored;
+        }
+    }
+}
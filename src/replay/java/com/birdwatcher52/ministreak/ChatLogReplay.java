@@ -0,0 +1,239 @@
+package com.birdwatcher52.ministreak;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.zip.GZIPInputStream;
+
+import net.runelite.api.ChatMessageType;
+
+/**
+ * Headless replay of a recorded chat log through the plugin's detection path
+ * (ChatTriggers, DailyCompletionService, ResetService on day roll) under a simulated UTC clock.
+ *
+ * Input is one record per line, tab-separated: timestamp, ChatMessageType, name, message.
+ * The timestamp is epoch millis or an ISO-8601 instant; lines starting with '#' are skipped
+ * and ".gz" files are read compressed. Records are streamed, so memory stays flat no matter
+ * how long the log is.
+ *
+ * Usage: ChatLogReplay &lt;log&gt; [--expect-streak N] [--expect-best N] [--expect-completions N]
+ * (or ./gradlew replayChatLog -PreplayArgs="...").
+ */
+public final class ChatLogReplay
+{
+    private static final long TICK_MS = 600;
+    private static final MiniTask[] TASKS = MiniTask.values();
+
+    private final ReplayClock time = new ReplayClock();
+    private final UtcClock clock = new UtcClock();
+    private final ChatTriggers triggers = new ChatTriggers();
+    private final ResetService resetService = new ResetService();
+    private final DailyCompletionService completeService = new DailyCompletionService();
+    private final StreakState state = new StreakState();
+
+    private long currentTick = Long.MIN_VALUE;
+
+    // counters
+    private long lines = 0;
+    private long malformed = 0;
+    private final long[] detections = new long[TASKS.length];
+    private long completions = 0;
+    private long rolls = 0;
+
+    ChatLogReplay()
+    {
+        clock.setClock(time);
+    }
+
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length < 1)
+        {
+            System.err.println("usage: ChatLogReplay <log[.gz]> [--expect-streak N] [--expect-best N] [--expect-completions N]");
+            System.exit(2);
+        }
+
+        final Path log = Paths.get(args[0]);
+        final ChatLogReplay replay = new ChatLogReplay();
+
+        final long start = System.nanoTime();
+        try (BufferedReader in = open(log))
+        {
+            replay.replay(in);
+        }
+        final long elapsedNs = System.nanoTime() - start;
+
+        replay.report(System.out, elapsedNs);
+        System.exit(replay.check(args) ? 0 : 1);
+    }
+
+    void replay(BufferedReader in) throws IOException
+    {
+        String line;
+        while ((line = in.readLine()) != null)
+        {
+            lines++;
+            if (line.isEmpty() || line.charAt(0) == '#') continue;
+
+            final int t1 = line.indexOf('\t');
+            final int t2 = t1 < 0 ? -1 : line.indexOf('\t', t1 + 1);
+            final int t3 = t2 < 0 ? -1 : line.indexOf('\t', t2 + 1);
+            if (t3 < 0)
+            {
+                malformed++;
+                continue;
+            }
+
+            final long millis = parseTimestamp(line.substring(0, t1));
+            final ChatMessageType type = parseType(line.substring(t1 + 1, t2));
+            if (millis == Long.MIN_VALUE || type == null)
+            {
+                malformed++;
+                continue;
+            }
+
+            // name (t2..t3) is recorded for context; detection only looks at game messages
+            accept(millis, type, line.substring(t3 + 1));
+        }
+    }
+
+    /** One chat line at {@code millis}; ticks and day rolls advance exactly as they would in the client. */
+    void accept(long millis, ChatMessageType type, String message)
+    {
+        time.set(millis);
+
+        final long tick = Math.floorDiv(millis, TICK_MS);
+        if (tick != currentTick)
+        {
+            currentTick = tick;
+            final int today = clock.tick();
+            final int seenBefore = state.getLastSeenDay();
+            resetService.handleDailyRoll(state, today);
+            if (state.getLastSeenDay() != seenBefore) rolls++;
+            triggers.newTick();
+        }
+
+        final MiniTask task = triggers.detect(type, message);
+        if (task == null) return;
+
+        detections[task.ordinal()]++;
+        final int prevDaily = state.getLastCompletionDay();
+        completeService.onMarked(state, task, clock.today());
+        if (prevDaily != state.getLastCompletionDay()) completions++;
+
+        state.drainDirty(); // nothing is persisted during a replay
+    }
+
+    StreakState getState() { return state; }
+
+    void report(PrintStream out, long elapsedNs)
+    {
+        final double secs = Math.max(1e-9, elapsedNs / 1e9);
+        out.printf("Replayed %,d lines in %.2f s (%,.0f lines/s), %,d malformed%n",
+                lines, secs, lines / secs, malformed);
+
+        final StringBuilder sb = new StringBuilder("Detections:");
+        for (MiniTask task : TASKS) sb.append(' ').append(task).append('=').append(detections[task.ordinal()]);
+        out.println(sb);
+
+        out.printf("Days completed: %,d, day rolls: %,d%n", completions, rolls);
+        out.printf("Final state: streak=%d best=%d longest=%d lastSeen=%s lastCompletion=%s%n",
+                state.getCurrentStreak(), state.getBestStreak(), state.getHistory().longestRun(),
+                UtcClock.format(state.getLastSeenDay()), UtcClock.format(state.getLastCompletionDay()));
+    }
+
+    /** @return false if any --expect-* option disagrees with the final state */
+    boolean check(String[] args)
+    {
+        boolean ok = true;
+        for (int i = 1; i + 1 < args.length; i += 2)
+        {
+            final long expected = Long.parseLong(args[i + 1]);
+            final long actual;
+            switch (args[i])
+            {
+                case "--expect-streak":
+                    actual = state.getCurrentStreak();
+                    break;
+                case "--expect-best":
+                    actual = state.getBestStreak();
+                    break;
+                case "--expect-completions":
+                    actual = completions;
+                    break;
+                default:
+                    System.err.println("Unknown option " + args[i]);
+                    ok = false;
+                    continue;
+            }
+
+            if (actual != expected)
+            {
+                System.err.printf("FAIL %s: expected %d, got %d%n", args[i], expected, actual);
+                ok = false;
+            }
+        }
+        return ok;
+    }
+
+    private static BufferedReader open(Path log) throws IOException
+    {
+        InputStream in = Files.newInputStream(log);
+        if (log.getFileName().toString().endsWith(".gz"))
+        {
+            in = new GZIPInputStream(in, 1 << 16);
+        }
+        return new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 1 << 16);
+    }
+
+    private static long parseTimestamp(String s)
+    {
+        try
+        {
+            final char c = s.isEmpty() ? ' ' : s.charAt(0);
+            return (c >= '0' && c <= '9' && s.indexOf('T') < 0)
+                    ? Long.parseLong(s)
+                    : Instant.parse(s).toEpochMilli();
+        }
+        catch (NumberFormatException | DateTimeParseException e)
+        {
+            return Long.MIN_VALUE;
+        }
+    }
+
+    private static ChatMessageType parseType(String s)
+    {
+        try
+        {
+            return ChatMessageType.valueOf(s);
+        }
+        catch (IllegalArgumentException e)
+        {
+            return null;
+        }
+    }
+
+    /** Wall clock that only moves when the replay says so. */
+    private static final class ReplayClock extends Clock
+    {
+        private long millis;
+
+        void set(long millis) { this.millis = millis; }
+
+        @Override public long millis() { return millis; }
+        @Override public Instant instant() { return Instant.ofEpochMilli(millis); }
+        @Override public ZoneId getZone() { return ZoneOffset.UTC; }
+        @Override public Clock withZone(ZoneId zone) { return this; }
+    }
+}
@@ -0,0 +1,154 @@
+package com.birdwatcher52.ministreak;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Changing the required set applies from today on: the days already played keep the verdict
+ * they got under the set in force then, in memory and through a saved record.
+ */
+public class DailyCompletionServiceTest
+{
+    private static final int START = 20_000;
+    private static final int BIRD = MiniTask.BIRDHOUSE.bit();
+    private static final int ALL = MiniTask.ALL_MASK;
+
+    private final DailyCompletionService complete = new DailyCompletionService();
+    private final ResetService reset = new ResetService();
+
+    private StreakState s;
+    private int today;
+
+    @Before
+    public void setUp()
+    {
+        s = new StreakState();
+        today = START;
+    }
+
+    @Test
+    public void wideningKeepsTheStreakBuiltUnderTheNarrowerSet()
+    {
+        complete.onRequiredChanged(s, BIRD, today);
+        for (int i = 0; i < 5; i++)
+        {
+            mark(MiniTask.BIRDHOUSE);
+            nextDay();
+        }
+        assertEquals(5, s.getCurrentStreak());
+
+        complete.onRequiredChanged(s, ALL, today);
+        assertEquals(5, s.getCurrentStreak());
+
+        mark(MiniTask.BIRDHOUSE);
+        assertEquals("today now needs both", 5, s.getCurrentStreak());
+        mark(MiniTask.HERB);
+        assertEquals(6, s.getCurrentStreak());
+
+        nextDay();
+        assertEquals(6, s.getCurrentStreak());
+        assertEquals(6, s.getBestStreak());
+    }
+
+    @Test
+    public void wideningAfterTodayCountedMakesTodayCountAgain()
+    {
+        complete.onRequiredChanged(s, BIRD, today);
+        for (int i = 0; i < 3; i++)
+        {
+            mark(MiniTask.BIRDHOUSE);
+            nextDay();
+        }
+        mark(MiniTask.BIRDHOUSE);
+        assertEquals(4, s.getCurrentStreak());
+
+        complete.onRequiredChanged(s, ALL, today);
+        assertEquals(3, s.getCurrentStreak());
+        assertEquals(UtcClock.NO_DAY, s.getLastCompletionDay());
+
+        mark(MiniTask.HERB);
+        assertEquals(4, s.getCurrentStreak());
+        assertEquals(today, s.getLastCompletionDay());
+    }
+
+    @Test
+    public void narrowingDoesNotCountDaysThatWereIncomplete()
+    {
+        complete.onRequiredChanged(s, ALL, today);
+        for (int i = 0; i < 3; i++)
+        {
+            mark(MiniTask.BIRDHOUSE);
+            mark(MiniTask.HERB);
+            nextDay();
+        }
+        mark(MiniTask.BIRDHOUSE); // incomplete under both-required: breaks the run
+        nextDay();
+        mark(MiniTask.BIRDHOUSE);
+        mark(MiniTask.HERB);
+        nextDay();
+        assertEquals(1, s.getCurrentStreak());
+
+        complete.onRequiredChanged(s, BIRD, today);
+        assertEquals(1, s.getCurrentStreak());
+
+        mark(MiniTask.BIRDHOUSE);
+        assertEquals(2, s.getCurrentStreak());
+        nextDay();
+        assertEquals(2, s.getCurrentStreak());
+        assertEquals(3, s.getBestStreak());
+    }
+
+    @Test
+    public void earlierSetsSurviveASavedRecord()
+    {
+        complete.onRequiredChanged(s, BIRD, today);
+        for (int i = 0; i < 4; i++)
+        {
+            mark(MiniTask.BIRDHOUSE);
+            nextDay();
+        }
+        complete.onRequiredChanged(s, ALL, today);
+        mark(MiniTask.BIRDHOUSE);
+        mark(MiniTask.HERB);
+        assertEquals(5, s.getCurrentStreak());
+
+        final StreakState loaded = new StreakState();
+        assertTrue(StateCodec.decode(StateCodec.encode(s), loaded));
+        assertEquals(ALL, loaded.getRequiredMask());
+        assertEquals(5, loaded.getHistory().currentStreak(today));
+
+        // loaded under the old set (config changed while logged out): the change lands at today
+        final StreakState old = new StreakState();
+        complete.onRequiredChanged(old, BIRD, today - 4);
+        old.markDone(MiniTask.BIRDHOUSE, today - 2);
+        old.markDone(MiniTask.BIRDHOUSE, today - 1);
+        final StreakState back = new StreakState();
+        assertTrue(StateCodec.decode(StateCodec.encode(old), back));
+        complete.onRequiredChanged(back, ALL, today);
+        assertEquals(2, back.getCurrentStreak());
+    }
+
+    @Test
+    public void aProfileWithoutARecordedSetTakesTheFirstOneForEveryDay()
+    {
+        for (int d = START; d < START + 3; d++) s.markDone(MiniTask.BIRDHOUSE, d);
+        today = START + 3;
+
+        complete.onRequiredChanged(s, BIRD, today);
+        assertEquals(3, s.getCurrentStreak());
+    }
+
+    private void mark(MiniTask task)
+    {
+        complete.onMarked(s, task, today);
+    }
+
+    private void nextDay()
+    {
+        today++;
+        reset.handleDailyRoll(s, today);
+    }
+}
@@ -0,0 +1,196 @@
+package com.birdwatcher52.ministreak;
+
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import net.runelite.client.util.Text;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * The regex-free sent-name rewrite must match the regex version it replaced byte for byte.
+ * A fixed corpus of real-looking names plus a seeded random one is run through both.
+ */
+public class NameTokensTest
+{
+    private static final int OUR_IDX = 41;
+    private static final int RANDOM_CASES = 200_000;
+
+    private static final String[] NAMES = {
+            "Zezima",
+            "<img=2>Iron Bob",
+            "<img=22><img=2>Clan Mate",
+            "<col=ffdf00>37</col> <img=41><img=2>Iron Bob",
+            "<col=ffdf00>36</col> <img=41><img=2>Iron Bob",
+            "<col=ffdf00>36</col>\t<img=2>Iron Bob",
+            "<col=ffdf00>12345</col> <img=41>Too Many Digits",
+            "<col=ffdf00></col> Empty Prefix",
+            "<img=41><img=2><img=10>Uim Alice",
+            "<img=2><img=41><img=2>Twice Native",
+            "<img=02>Zero Padded",
+            "<img=99999999999>Overflow",
+            "<img=>Broken<img=2>",
+            "<img=3Unclosed",
+            "<col=ff9040>Coloured</col>Name",
+            "<img=3>Hardcore Hal",
+            "Name\u00A0With Nbsp",
+            "",
+    };
+
+    // --- the regex implementation this replaced (StreakNameDecorator before the rewrite) ---
+
+    private static final Pattern LEADING_IMGS = Pattern.compile("^(?:<img=\\d+>)+");
+    private static final Pattern STREAK_PREFIX_PATTERN =
+            Pattern.compile("^<col=" + NameTokens.STREAK_COLOR + ">\\d{1,4}</col>\\s*");
+
+    private static String regexDecorate(String base, int streak, int ourIdx, int nativeIdx, boolean showNative)
+    {
+        final String our = "<img=" + ourIdx + ">";
+        final String prefix = streak < 1 ? "" : "<col=" + NameTokens.STREAK_COLOR + ">" + streak + "</col> ";
+        if (base.startsWith(prefix + our)) return base;
+
+        String cleanBase = base;
+        final Matcher prefM = STREAK_PREFIX_PATTERN.matcher(cleanBase);
+        if (prefM.find()) cleanBase = prefM.replaceFirst("");
+
+        String leading = "";
+        String rest = cleanBase;
+        final Matcher chain = LEADING_IMGS.matcher(cleanBase);
+        if (chain.find())
+        {
+            leading = chain.group(0);
+            rest = cleanBase.substring(chain.end());
+            leading = leading.replaceFirst(our, "");
+            if (!showNative && nativeIdx >= 0) leading = leading.replaceFirst("<img=" + nativeIdx + ">", "");
+        }
+
+        final String nativeTag = "<img=" + nativeIdx + ">";
+        final boolean leadingHasNative = nativeIdx >= 0 && leading.contains(nativeTag);
+        return prefix + our + ((showNative && nativeIdx >= 0 && !leadingHasNative) ? nativeTag : "") + leading + rest;
+    }
+
+    // --- the current path, as StreakNameDecorator drives it ---
+
+    private static String tokenDecorate(NameTokens tokens, String base, int streak, int ourIdx, int nativeIdx, boolean showNative)
+    {
+        if (base.startsWith(tokens.head(streak, ourIdx))) return base;
+
+        final int start = NameTokens.skipStreakPrefix(base);
+        final int chainEnd = NameTokens.skipImgChain(base, start);
+        return tokens.compose(base, start, chainEnd, streak, ourIdx, nativeIdx, showNative);
+    }
+
+    @Test
+    public void composeMatchesRegexOnCorpus()
+    {
+        final NameTokens tokens = new NameTokens();
+        for (String name : NAMES)
+        {
+            for (int streak : new int[]{0, 1, 36, 37, 12345})
+            {
+                for (int nativeIdx : new int[]{-1, 2, 3})
+                {
+                    for (boolean showNative : new boolean[]{true, false})
+                    {
+                        assertEquals(name + " streak=" + streak + " native=" + nativeIdx + " show=" + showNative,
+                                regexDecorate(name, streak, OUR_IDX, nativeIdx, showNative),
+                                tokenDecorate(tokens, name, streak, OUR_IDX, nativeIdx, showNative));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void composeMatchesRegexOnRandomNames()
+    {
+        final NameTokens tokens = new NameTokens();
+        final Random rnd = new Random(52);
+        for (int i = 0; i < RANDOM_CASES; i++)
+        {
+            final String name = randomName(rnd);
+            final int streak = rnd.nextInt(4) == 0 ? 0 : rnd.nextInt(200);
+            final int nativeIdx = rnd.nextInt(4) - 1; // -1..2
+            final boolean showNative = rnd.nextBoolean();
+
+            assertEquals(name + " streak=" + streak + " native=" + nativeIdx + " show=" + showNative,
+                    regexDecorate(name, streak, OUR_IDX, nativeIdx, showNative),
+                    tokenDecorate(tokens, name, streak, OUR_IDX, nativeIdx, showNative));
+        }
+    }
+
+    @Test
+    public void composeKnownOutputs()
+    {
+        final NameTokens tokens = new NameTokens();
+        assertEquals("<col=ffdf00>37</col> <img=41><img=2>Iron Bob",
+                tokenDecorate(tokens, "<img=2>Iron Bob", 37, OUR_IDX, 2, true));
+        assertEquals("<col=ffdf00>38</col> <img=41>Iron Bob",
+                tokenDecorate(tokens, "<col=ffdf00>37</col> <img=41><img=2>Iron Bob", 38, OUR_IDX, 2, false));
+        assertEquals("<img=41>Zezima",
+                tokenDecorate(tokens, "Zezima", 0, OUR_IDX, -1, true));
+    }
+
+    @Test
+    public void isSameNameMatchesStandardize()
+    {
+        final Random rnd = new Random(7);
+        final String[] locals = {"iron bob", "zezima", "a", "mod ash"};
+        for (int i = 0; i < RANDOM_CASES; i++)
+        {
+            final String local = locals[rnd.nextInt(locals.length)];
+            final String raw = randomSender(rnd, local);
+            assertEquals(raw + " vs " + local,
+                    Text.standardize(raw).equalsIgnoreCase(local),
+                    NameTokens.isSameName(raw, local));
+        }
+    }
+
+    // --- corpus generators ---
+
+    private static final String[] IMGS = {"<img=41>", "<img=2>", "<img=3>", "<img=10>", "<img=02>", "<img=410>", "<img=4>",
+            "<img=99999999999>", "<img=>", "<img=2"};
+    private static final String[] SPACES = {"", " ", "  ", "\t", "\u00A0", " \n"};
+    private static final String[] WORDS = {"Iron Bob", "Zezima", "Clan Mate", "Uim Alice", "x", "", "<col=ff0000>Red</col>"};
+
+    private static String randomName(Random rnd)
+    {
+        final StringBuilder sb = new StringBuilder();
+        if (rnd.nextInt(3) == 0)
+        {
+            sb.append("<col=").append(rnd.nextInt(5) == 0 ? "ff9040" : NameTokens.STREAK_COLOR).append('>');
+            final int digits = rnd.nextInt(7);
+            for (int d = 0; d < digits; d++) sb.append((char) ('0' + rnd.nextInt(10)));
+            sb.append(rnd.nextInt(6) == 0 ? "</co>" : "</col>");
+            sb.append(SPACES[rnd.nextInt(SPACES.length)]);
+        }
+        final int imgs = rnd.nextInt(5);
+        for (int k = 0; k < imgs; k++) sb.append(IMGS[rnd.nextInt(IMGS.length)]);
+        sb.append(WORDS[rnd.nextInt(WORDS.length)]);
+        if (rnd.nextInt(8) == 0) sb.append(IMGS[rnd.nextInt(IMGS.length)]);
+        return sb.toString();
+    }
+
+    private static String randomSender(Random rnd, String local)
+    {
+        final StringBuilder sb = new StringBuilder();
+        sb.append(SPACES[rnd.nextInt(SPACES.length)]);
+        final int imgs = rnd.nextInt(3);
+        for (int k = 0; k < imgs; k++) sb.append(IMGS[rnd.nextInt(IMGS.length - 2)]);
+
+        final String base = rnd.nextInt(4) == 0 ? WORDS[rnd.nextInt(WORDS.length)] : local;
+        for (int c = 0; c < base.length(); c++)
+        {
+            char ch = base.charAt(c);
+            if (rnd.nextBoolean()) ch = Character.toUpperCase(ch);
+            if (ch == ' ' && rnd.nextInt(3) == 0) ch = '\u00A0';
+            sb.append(ch);
+            if (rnd.nextInt(20) == 0) sb.append("<col=ffffff>");
+        }
+        if (rnd.nextInt(6) == 0) sb.append(rnd.nextBoolean() ? "x" : "<lt>");
+        sb.append(SPACES[rnd.nextInt(SPACES.length)]);
+        return sb.toString();
+    }
+}
@@ -0,0 +1,129 @@
+package com.birdwatcher52.ministreak.util;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.SourceDataLine;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * play() to first mixed block, against a stub line so it runs without an audio device.
+ * The stub reports an empty device buffer, so what is measured is the hand-off to the mixer
+ * thread plus one block of mixing.
+ */
+public class TinyWavTest {
+    private static final int PLAYS = 50;
+    private static final long MAX_START_NS = TimeUnit.MILLISECONDS.toNanos(25);
+
+    // nanoTime of every write that carried sound
+    private final BlockingQueue<Long> audible = new LinkedBlockingQueue<>();
+    private TinyWav wav;
+    private File pip;
+
+    @Before
+    public void setUp() throws Exception {
+        wav = new TinyWav((format, bufferBytes) -> stubLine(bufferBytes));
+        pip = File.createTempFile("pip", ".wav");
+        writePip(pip);
+        wav.registerFile("pip", pip.toPath());
+    }
+
+    @After
+    public void tearDown() {
+        wav.close();
+        pip.delete();
+    }
+
+    @Test
+    public void enqueueToMixLatency() throws Exception {
+        final LatencyHistogram startLatency = new LatencyHistogram();
+        wav.setStartLatencyHistogram(startLatency);
+
+        final long[] latencies = new long[PLAYS];
+        for (int i = 0; i < PLAYS; i++) {
+            audible.clear();
+            final long t = System.nanoTime();
+            wav.play("pip", 100, 0);
+
+            final Long heard = audible.poll(1, TimeUnit.SECONDS);
+            assertNotNull("play " + i + " never reached the line", heard);
+            latencies[i] = heard - t;
+
+            Thread.sleep(15); // let the 5 ms pip finish so each play starts from an idle mixer
+        }
+
+        Arrays.sort(latencies);
+        final long p50 = latencies[PLAYS / 2];
+        final long max = latencies[PLAYS - 1];
+        assertTrue("median play-to-mix " + p50 / 1000 + "µs", p50 < MAX_START_NS);
+        assertTrue("slowest play-to-mix " + max / 1000 + "µs", max < 4 * MAX_START_NS);
+
+        // the mixer's own measurement agrees and saw every start
+        assertEquals(PLAYS, startLatency.count());
+        assertTrue(startLatency.percentileNanos(0.5) < MAX_START_NS);
+    }
+
+    @Test
+    public void mutedPlayNeverReachesTheLine() throws Exception {
+        wav.play("pip", 0, 0);
+        wav.play("missing", 100, 0);
+        assertEquals(null, audible.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    private SourceDataLine stubLine(int bufferBytes) {
+        return (SourceDataLine) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{SourceDataLine.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getBufferSize":
+                        case "available":
+                            return bufferBytes;
+                        case "write":
+                            final byte[] b = (byte[]) args[0];
+                            final int off = (Integer) args[1];
+                            final int len = (Integer) args[2];
+                            for (int i = off; i < off + len; i++) {
+                                if (b[i] != 0) {
+                                    audible.offer(System.nanoTime());
+                                    break;
+                                }
+                            }
+                            return len;
+                        case "isOpen":
+                        case "isActive":
+                        case "isRunning":
+                            return true;
+                        default:
+                            return null;
+                    }
+                });
+    }
+
+    /** 5 ms of a constant non-zero level, 44.1 kHz 16-bit stereo (the mixer format, so no resampling). */
+    private static void writePip(File f) throws Exception {
+        final AudioFormat format = new AudioFormat(44_100f, 16, 2, true, false);
+        final int frames = 220;
+        final byte[] data = new byte[frames * format.getFrameSize()];
+        for (int i = 0; i < data.length; i += 2) {
+            data[i] = 0x00;
+            data[i + 1] = 0x20;
+        }
+        try (AudioInputStream in = new AudioInputStream(new ByteArrayInputStream(data), format, frames)) {
+            AudioSystem.write(in, AudioFileFormat.Type.WAVE, f);
+        }
+    }
+}